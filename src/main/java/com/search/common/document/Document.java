@@ -1,12 +1,15 @@
 package com.search.common.document;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
 public class Document {
     private HashMap<FieldType, Field> fieldMap;
+    private HashMap<FieldType, List<String>> keywords; // Untokenized field values
     private TreeMap<String, Integer> tf; // Term frequencies passed in directly
     private String docPath;
     private Integer pmcdId;
@@ -27,6 +30,7 @@ public class Document {
         this.pmcdId = pmcdId;
         this.tf = docTf != null ? docTf : new TreeMap<>();
         fieldMap = new HashMap<>();
+        keywords = new HashMap<>();
     }
 
     public void addField(Field field) {
@@ -37,6 +41,14 @@ public class Document {
         return fieldMap.get(fieldType); // Faster lookup by field type
     }
 
+    public void addKeyword(FieldType fieldType, String value) {
+        keywords.computeIfAbsent(fieldType, k -> new ArrayList<>()).add(value);
+    }
+
+    public Map<FieldType, List<String>> getKeywords() {
+        return keywords;
+    }
+
     public String getDocPath() {
         return docPath;
     }
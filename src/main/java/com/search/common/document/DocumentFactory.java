@@ -10,6 +10,9 @@ import java.util.List;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+import com.search.common.index.DocValues;
+import com.search.common.index.IndexProfile;
+import com.search.common.index.KeywordIndex;
 import com.search.common.token.SimpleTokenStream;
 import com.search.common.token.TokenStream;
 import com.search.common.utils.StopWordManager;
@@ -18,26 +21,83 @@ public class DocumentFactory {
     
     // Scan a single document
     public static Document createDocument(File file) throws IOException {
+        return createDocument(file, IndexProfile.FULL);
+    }
+
+    // Scan a single document, tokenizing only the fields selected by the profile
+    public static Document createDocument(File file, IndexProfile profile) throws IOException {
+        return createDocument(file, profile, null);
+    }
+
+    /**
+     * @param stageNanos If not null, [0] and [1] accumulate the nanoseconds
+     *                   spent reading the NXML file and analyzing its text
+     */
+    public static Document createDocument(File file, IndexProfile profile, long[] stageNanos) throws IOException {
+        long start = System.nanoTime();
         NXMLFileReader xmlFile = new NXMLFileReader(file);
+        long parsed = System.nanoTime();
 
         TreeMap<String, Integer> documentTf = new TreeMap<>();
         Document                 document   = new Document(Integer.parseInt(xmlFile.getPMCID()), file.getAbsolutePath(), documentTf);
 
         // Add fields to the document
-        document.addField( new Field( FieldType.TITLE,     tokenizeContent(new SimpleTokenStream(xmlFile.getTitle(), StopWordManager.getStopWords()), documentTf)));
-        document.addField( new Field( FieldType.ABSTRACT,  tokenizeContent(new SimpleTokenStream(xmlFile.getAbstr(), StopWordManager.getStopWords()), documentTf)));
-        document.addField( new Field( FieldType.BODY,      tokenizeContent(new SimpleTokenStream(xmlFile.getBody(),  StopWordManager.getStopWords()), documentTf)));
-        document.addField( new Field( FieldType.JOURNAL,   tokenizeContent(new SimpleTokenStream(xmlFile.getJournal(), StopWordManager.getStopWords()), documentTf)));
-        document.addField( new Field( FieldType.PUBLISHER, tokenizeContent(new SimpleTokenStream(xmlFile.getPublisher(), StopWordManager.getStopWords()), documentTf)));
-        document.addField( new Field( FieldType.AUTHOR,    tokenizeContent(new SimpleTokenStream(xmlFile.getAuthors().toString(), StopWordManager.getStopWords()), documentTf)));
-        document.addField( new Field( FieldType.CATEGORY,  tokenizeContent(new SimpleTokenStream(xmlFile.getCategories().toString(), StopWordManager.getStopWords()), documentTf)));
+        for (FieldType fieldType : profile.getFields()) {
+            HashMap<String, TreeSet<Integer>> termPositions = tokenizeContent(
+                new SimpleTokenStream(getContent(xmlFile, fieldType), StopWordManager.getStopWords()),
+                documentTf,
+                profile.keepsPositions());
+
+            if (profile.keepsPositions()) {
+                document.addField(new Field(fieldType, termPositions));
+            }
+        }
+
+        // Exact-match and facet values, kept whole next to their tokenized form
+        for (FieldType fieldType : FieldType.values()) {
+            if (!profile.indexes(fieldType)) continue;
+            if (!KeywordIndex.FIELDS.contains(fieldType) && !DocValues.FIELDS.contains(fieldType)) continue;
+
+            for (String value : getValues(xmlFile, fieldType)) {
+                String keyword = value.trim().replaceAll("\\s+", " ");
+                if (!keyword.isEmpty()) {
+                    document.addKeyword(fieldType, keyword);
+                }
+            }
+        }
 
         document.calcDocumentLength();
         document.calcMaxFrequency();
 
+        if (stageNanos != null) {
+            stageNanos[0] += parsed - start;
+            stageNanos[1] += System.nanoTime() - parsed;
+        }
+
         return document;
     }
 
+    private static String getContent(NXMLFileReader xmlFile, FieldType fieldType) {
+        switch (fieldType) {
+            case TITLE:     return xmlFile.getTitle();
+            case ABSTRACT:  return xmlFile.getAbstr();
+            case BODY:      return xmlFile.getBody();
+            case JOURNAL:   return xmlFile.getJournal();
+            case PUBLISHER: return xmlFile.getPublisher();
+            case AUTHOR:    return xmlFile.getAuthors().toString();
+            case CATEGORY:  return xmlFile.getCategories().toString();
+            default:        throw new IllegalArgumentException("Unknown field type: " + fieldType);
+        }
+    }
+
+    // Individual values of a field, in a stable order
+    private static List<String> getValues(NXMLFileReader xmlFile, FieldType fieldType) {
+        switch (fieldType) {
+            case AUTHOR:    return xmlFile.getAuthors();
+            case CATEGORY:  return new ArrayList<>(new TreeSet<>(xmlFile.getCategories()));
+            default:        return List.of(getContent(xmlFile, fieldType));
+        }
+    }
 
     public static List<Document> createDocuments(List<Path> filePaths) throws IOException {
         ArrayList<Document> docs = new ArrayList<>();
@@ -50,7 +110,8 @@ public class DocumentFactory {
     // Common logic to process tokens using a TokenStream
     private static HashMap<String, TreeSet<Integer>> tokenizeContent(
         TokenStream tokenStream, 
-        TreeMap<String, Integer> docTf) throws IOException
+        TreeMap<String, Integer> docTf,
+        boolean keepPositions) throws IOException
     {
         String token;
         HashMap<String, TreeSet<Integer>> termPositions = new HashMap<>();
@@ -59,8 +120,10 @@ public class DocumentFactory {
         while ((token = tokenStream.getNext()) != null) {
             token = token.trim();
             if (!token.isEmpty()) {
-                termPositions.putIfAbsent(token, new TreeSet<>());
-                termPositions.get(token).add(position);
+                if (keepPositions) {
+                    termPositions.putIfAbsent(token, new TreeSet<>());
+                    termPositions.get(token).add(position);
+                }
                 docTf.put(token, docTf.getOrDefault(token, 0) + 1);
                 position++;
             }
@@ -0,0 +1,429 @@
+package com.search.common.index;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The densest posting lists, stored as bitmaps instead of PostingFile.txt
+ * lines. Their vocabulary entries record no text postings, and the lines
+ * keep no positions.
+ * Doc ids are split Roaring-style into 16-bit chunks; each chunk is either a
+ * sorted array of the low 16 bits or a 65536-bit bitmap, whichever is smaller.
+ * Term frequencies follow the containers in ascending docId order.
+ *
+ * Layout of BitmapPostings.bin:
+ *   directory - int termCount, then per term: int termId, long offset, int length, int df
+ *   lists     - per term: int df, int containerCount,
+ *               per container: char key, char cardinality - 1, then
+ *               cardinality chars (array) or BITMAP_WORDS longs (bitmap),
+ *               followed by df varint term frequencies
+ */
+public class BitmapPostings implements Closeable {
+    public static final String FILE_NAME = "BitmapPostings.bin";
+
+    // Above this cardinality a 65536-bit bitmap is smaller than a char array
+    public static final int ARRAY_MAX_CARDINALITY = 4096;
+    public static final int BITMAP_WORDS = 1024;
+    public static final int DIRECTORY_ENTRY_BYTES = Integer.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+
+    private final FileChannel channel;
+    private final Map<Integer, long[]> directory; // termId -> {offset, length, df}
+
+    private BitmapPostings(FileChannel channel, Map<Integer, long[]> directory) {
+        this.channel = channel;
+        this.directory = directory;
+    }
+
+    // Returns null for indexes built without bitmap postings
+    public static BitmapPostings open(File indexDir) throws IOException {
+        Path file = indexDir.toPath().resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            int termCount = readFully(channel, 0, Integer.BYTES).getInt();
+            ByteBuffer entries = readFully(channel, Integer.BYTES, termCount * DIRECTORY_ENTRY_BYTES);
+
+            Map<Integer, long[]> directory = new HashMap<>();
+            for (int i = 0; i < termCount; i++) {
+                int termId = entries.getInt();
+                directory.put(termId, new long[] { entries.getLong(), entries.getInt(), entries.getInt() });
+            }
+            return new BitmapPostings(channel, directory);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public boolean contains(int termId) {
+        return directory.containsKey(termId);
+    }
+
+    // Length of the term's list without decoding it, -1 if it is stored as text
+    public int getDf(int termId) {
+        long[] entry = directory.get(termId);
+        return entry != null ? (int) entry[2] : -1;
+    }
+
+    public int getTermCount() {
+        return directory.size();
+    }
+
+    /**
+     * @return The decoded list of the term, or null if it is only stored as text
+     */
+    public TermPostings get(int termId) throws IOException {
+        long[] entry = directory.get(termId);
+        if (entry == null) {
+            return null;
+        }
+        return TermPostings.read(readFully(channel, entry[0], (int) entry[1]));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Truncated " + FILE_NAME);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    public interface PostingConsumer {
+        void accept(long docId, int tf);
+    }
+
+    public interface DocConsumer {
+        void accept(long docId);
+    }
+
+    public interface SharedPostingConsumer {
+        void accept(long docId, int tf, int otherTf);
+    }
+
+    /**
+     * Set of int doc ids as 16-bit keyed containers, in ascending key order.
+     * A container is a sorted char[] (sparse) or a long[BITMAP_WORDS] (dense).
+     */
+    public static class DocBitmap {
+        private final char[] keys;
+        private final Object[] containers;
+        private final int cardinality;
+
+        DocBitmap(char[] keys, Object[] containers, int cardinality) {
+            this.keys = keys;
+            this.containers = containers;
+            this.cardinality = cardinality;
+        }
+
+        // docIds must be ascending and fit in an int
+        public static DocBitmap of(int[] docIds) {
+            List<Character> keyList = new ArrayList<>();
+            List<Object> containerList = new ArrayList<>();
+
+            int start = 0;
+            while (start < docIds.length) {
+                int key = docIds[start] >>> 16;
+                int end = start;
+                while (end < docIds.length && (docIds[end] >>> 16) == key) end++;
+
+                keyList.add((char) key);
+                containerList.add(container(docIds, start, end));
+                start = end;
+            }
+
+            char[] keys = new char[keyList.size()];
+            for (int i = 0; i < keys.length; i++) keys[i] = keyList.get(i);
+            return new DocBitmap(keys, containerList.toArray(), docIds.length);
+        }
+
+        private static Object container(int[] docIds, int from, int to) {
+            if (to - from > ARRAY_MAX_CARDINALITY) {
+                long[] words = new long[BITMAP_WORDS];
+                for (int i = from; i < to; i++) {
+                    int low = docIds[i] & 0xffff;
+                    words[low >>> 6] |= 1L << low;
+                }
+                return words;
+            }
+
+            char[] values = new char[to - from];
+            for (int i = from; i < to; i++) values[i - from] = (char) docIds[i];
+            return values;
+        }
+
+        public int cardinality() {
+            return cardinality;
+        }
+
+        // Visits the doc ids in ascending order
+        public void forEach(DocConsumer consumer) {
+            for (int c = 0; c < keys.length; c++) {
+                long high = (long) keys[c] << 16;
+                if (containers[c] instanceof long[]) {
+                    long[] words = (long[]) containers[c];
+                    for (int w = 0; w < BITMAP_WORDS; w++) {
+                        long word = words[w];
+                        while (word != 0) {
+                            consumer.accept(high | (w << 6) | Long.numberOfTrailingZeros(word));
+                            word &= word - 1;
+                        }
+                    }
+                } else {
+                    for (char value : (char[]) containers[c]) {
+                        consumer.accept(high | value);
+                    }
+                }
+            }
+        }
+
+        // Intersection, container by container, with word-level ANDs between bitmaps
+        public DocBitmap and(DocBitmap other) {
+            List<Character> keyList = new ArrayList<>();
+            List<Object> containerList = new ArrayList<>();
+            int total = 0;
+
+            int i = 0, j = 0;
+            while (i < keys.length && j < other.keys.length) {
+                if (keys[i] < other.keys[j]) {
+                    i++;
+                } else if (keys[i] > other.keys[j]) {
+                    j++;
+                } else {
+                    Object container = and(containers[i], other.containers[j]);
+                    int count = count(container);
+                    if (count > 0) {
+                        keyList.add(keys[i]);
+                        containerList.add(container);
+                        total += count;
+                    }
+                    i++;
+                    j++;
+                }
+            }
+
+            char[] resultKeys = new char[keyList.size()];
+            for (int k = 0; k < resultKeys.length; k++) resultKeys[k] = keyList.get(k);
+            return new DocBitmap(resultKeys, containerList.toArray(), total);
+        }
+
+        private static Object and(Object a, Object b) {
+            if (a instanceof long[] && b instanceof long[]) {
+                long[] left = (long[]) a;
+                long[] right = (long[]) b;
+                long[] words = new long[BITMAP_WORDS];
+                int count = 0;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    words[w] = left[w] & right[w];
+                    count += Long.bitCount(words[w]);
+                }
+                return count > ARRAY_MAX_CARDINALITY ? words : toArray(words, count);
+            }
+            if (a instanceof long[]) {
+                return probe((char[]) b, (long[]) a);
+            }
+            if (b instanceof long[]) {
+                return probe((char[]) a, (long[]) b);
+            }
+
+            // Merge of two sorted arrays
+            char[] left = (char[]) a;
+            char[] right = (char[]) b;
+            char[] values = new char[Math.min(left.length, right.length)];
+            int count = 0, i = 0, j = 0;
+            while (i < left.length && j < right.length) {
+                if (left[i] < right[j]) i++;
+                else if (left[i] > right[j]) j++;
+                else {
+                    values[count++] = left[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(values, count);
+        }
+
+        private static char[] probe(char[] values, long[] words) {
+            char[] result = new char[values.length];
+            int count = 0;
+            for (char value : values) {
+                if ((words[value >>> 6] & (1L << value)) != 0) result[count++] = value;
+            }
+            return Arrays.copyOf(result, count);
+        }
+
+        private static char[] toArray(long[] words, int count) {
+            char[] values = new char[count];
+            int k = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                long word = words[w];
+                while (word != 0) {
+                    values[k++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return values;
+        }
+
+        /**
+         * Positions of ascending doc ids of the set, found in one forward pass
+         * by counting the doc ids of the containers and words passed over.
+         */
+        private final class RankCursor {
+            private int container;
+            private int containerBase;  // doc ids in the containers before this one
+            private int word;
+            private int wordBase;       // doc ids in the words of a bitmap container before this one
+            private int position;       // in an array container
+
+            // Rank of a doc id of the set; doc ids must be asked for in ascending order
+            int rank(long docId) {
+                char key = (char) (docId >>> 16);
+                while (keys[container] < key) {
+                    containerBase += count(containers[container++]);
+                    word = 0;
+                    wordBase = 0;
+                    position = 0;
+                }
+
+                int low = (int) docId & 0xffff;
+                if (containers[container] instanceof long[]) {
+                    long[] words = (long[]) containers[container];
+                    while (word < low >>> 6) {
+                        wordBase += Long.bitCount(words[word++]);
+                    }
+                    return containerBase + wordBase + Long.bitCount(words[word] & ((1L << low) - 1));
+                }
+
+                char[] values = (char[]) containers[container];
+                while (values[position] < low) position++;
+                return containerBase + position;
+            }
+        }
+
+        private static int count(Object container) {
+            if (container instanceof char[]) {
+                return ((char[]) container).length;
+            }
+            int count = 0;
+            for (long word : (long[]) container) count += Long.bitCount(word);
+            return count;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(keys.length);
+            for (int c = 0; c < keys.length; c++) {
+                out.writeChar(keys[c]);
+                out.writeChar(count(containers[c]) - 1);
+                if (containers[c] instanceof long[]) {
+                    for (long word : (long[]) containers[c]) out.writeLong(word);
+                } else {
+                    for (char value : (char[]) containers[c]) out.writeChar(value);
+                }
+            }
+        }
+
+        static DocBitmap read(ByteBuffer buffer, int cardinality) {
+            int containerCount = buffer.getInt();
+            char[] keys = new char[containerCount];
+            Object[] containers = new Object[containerCount];
+            for (int c = 0; c < containerCount; c++) {
+                keys[c] = buffer.getChar();
+                int count = buffer.getChar() + 1;
+                if (count > ARRAY_MAX_CARDINALITY) {
+                    long[] words = new long[BITMAP_WORDS];
+                    buffer.asLongBuffer().get(words);
+                    buffer.position(buffer.position() + BITMAP_WORDS * Long.BYTES);
+                    containers[c] = words;
+                } else {
+                    char[] values = new char[count];
+                    buffer.asCharBuffer().get(values);
+                    buffer.position(buffer.position() + count * Character.BYTES);
+                    containers[c] = values;
+                }
+            }
+            return new DocBitmap(keys, containers, cardinality);
+        }
+    }
+
+    // A posting list: the doc bitmap plus term frequencies in docId order
+    public static class TermPostings {
+        private final DocBitmap docs;
+        private final int[] tfs;
+
+        public TermPostings(DocBitmap docs, int[] tfs) {
+            this.docs = docs;
+            this.tfs = tfs;
+        }
+
+        public DocBitmap getDocs() { return docs; }
+        public int getDf() { return tfs.length; }
+
+        public void forEach(PostingConsumer consumer) {
+            int[] index = { 0 };
+            docs.forEach(docId -> consumer.accept(docId, tfs[index[0]++]));
+        }
+
+        /**
+         * Visits the documents of both lists in ascending order with their
+         * frequency in each. The doc ids come from DocBitmap.and, the
+         * frequencies from one forward rank pass over each list.
+         */
+        public void forEachShared(TermPostings other, SharedPostingConsumer consumer) {
+            DocBitmap shared = docs.and(other.docs);
+            DocBitmap.RankCursor ranks = docs.new RankCursor();
+            DocBitmap.RankCursor otherRanks = other.docs.new RankCursor();
+            shared.forEach(docId -> consumer.accept(docId, tfs[ranks.rank(docId)], other.tfs[otherRanks.rank(docId)]));
+        }
+
+        public void write(DataOutputStream out) throws IOException {
+            out.writeInt(tfs.length);
+            docs.write(out);
+            for (int tf : tfs) {
+                while ((tf & ~0x7f) != 0) {
+                    out.writeByte((tf & 0x7f) | 0x80);
+                    tf >>>= 7;
+                }
+                out.writeByte(tf);
+            }
+        }
+
+        static TermPostings read(ByteBuffer buffer) {
+            int df = buffer.getInt();
+            DocBitmap docs = DocBitmap.read(buffer, df);
+
+            int[] tfs = new int[df];
+            for (int i = 0; i < df; i++) {
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buffer.get();
+                    value |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                tfs[i] = value;
+            }
+            return new TermPostings(docs, tfs);
+        }
+    }
+}
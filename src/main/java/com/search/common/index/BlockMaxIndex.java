@@ -0,0 +1,121 @@
+package com.search.common.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Skip data for the text postings: every posting list is cut into blocks of
+ * BLOCK_SIZE lines, and each block records its last docId, where it starts
+ * relative to the term's pointer, and its highest tf and score factors.
+ * Cursors binary-search the blocks to skip without parsing, and block-max
+ * pruning bounds a whole block of documents at once.
+ *
+ * Layout of BlockMaxIndex.bin:
+ *   header    - int termCount, int blockSize
+ *   directory - per termId: long firstBlock, int blockCount (0 if the list is not docId-sorted)
+ *   blocks    - long lastDocId, long offset, int maxTf, double bm25Max, double vsmMax
+ */
+public class BlockMaxIndex {
+    public static final String FILE_NAME = "BlockMaxIndex.bin";
+    public static final int BLOCK_SIZE = 128;
+
+    public static final int HEADER_BYTES = 2 * Integer.BYTES;
+    public static final int DIRECTORY_ENTRY_BYTES = Long.BYTES + Integer.BYTES;
+    public static final int BLOCK_BYTES = 2 * Long.BYTES + Integer.BYTES + 2 * Double.BYTES;
+
+    private final MappedByteBuffer buffer;
+    private final int termCount;
+    private final int blockSize;
+    private final long blocksStart;
+
+    private BlockMaxIndex(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        this.termCount = buffer.getInt(0);
+        this.blockSize = buffer.getInt(Integer.BYTES);
+        this.blocksStart = HEADER_BYTES + (long) termCount * DIRECTORY_ENTRY_BYTES;
+    }
+
+    // Returns null for indexes built without block-max data
+    public static BlockMaxIndex open(File indexDir) throws IOException {
+        Path file = indexDir.toPath().resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(FILE_NAME + " is too large to map: " + channel.size());
+            }
+            return new BlockMaxIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * @return The blocks of the term, or null if its list has none
+     */
+    public Blocks blocks(int termId) {
+        if (termId < 0 || termId >= termCount) {
+            return null;
+        }
+        int entry = HEADER_BYTES + termId * DIRECTORY_ENTRY_BYTES;
+        int count = buffer.getInt(entry + Long.BYTES);
+        if (count == 0) {
+            return null;
+        }
+        return new Blocks(blocksStart + buffer.getLong(entry) * BLOCK_BYTES, count);
+    }
+
+    // View of one term's blocks; reads use absolute positions only
+    public final class Blocks {
+        private final long start;
+        private final int count;
+
+        private Blocks(long start, int count) {
+            this.start = start;
+            this.count = count;
+        }
+
+        public int count() { return count; }
+
+        public int blockSize() { return blockSize; }
+
+        public long lastDocId(int block) { return buffer.getLong(position(block)); }
+
+        // Byte offset of the block's first line from the term's posting pointer
+        public long offset(int block) { return buffer.getLong(position(block) + Long.BYTES); }
+
+        public int maxTf(int block) { return buffer.getInt(position(block) + 2 * Long.BYTES); }
+
+        public double maxFactor(int block, ScoreFactor factor) {
+            int position = position(block) + 2 * Long.BYTES + Integer.BYTES;
+            return buffer.getDouble(factor == ScoreFactor.BM25 ? position : position + Double.BYTES);
+        }
+
+        // First block at or after from whose last docId is >= target, count if there is none
+        public int find(long target, int from) {
+            int low = from;
+            int high = count;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (lastDocId(mid) < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int position(int block) {
+            return (int) (start + (long) block * BLOCK_BYTES);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.search.common.index;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Collection-wide statistics, persisted in IndexMetadata.txt when the index is
+ * built so the query process does not have to derive them from the documents.
+ */
+public class CollectionStatistics {
+    private static final String DOCUMENTS_KEY = "stats.documents";
+    private static final String TOKENS_KEY = "stats.tokens";
+    private static final String AVERAGE_LENGTH_KEY = "stats.averageLength";
+
+    private final long documents;
+    private final long tokens;
+    private final double averageLength;
+
+    public CollectionStatistics(long documents, long tokens, double averageLength) {
+        this.documents = documents;
+        this.tokens = tokens;
+        this.averageLength = averageLength;
+    }
+
+    public static CollectionStatistics compute(DocumentTable documents) {
+        long tokens = 0;
+        for (int ordinal = 0; ordinal < documents.size(); ordinal++) {
+            tokens += (long) documents.getLength(ordinal);
+        }
+        return new CollectionStatistics(documents.size(), tokens, documents.getAverageLength());
+    }
+
+    public static CollectionStatistics compute(File indexDir) throws IOException {
+        try (DocumentTable documents = DocumentTable.open(indexDir)) {
+            return compute(documents);
+        }
+    }
+
+    // Null for indexes built before the statistics were stored
+    public static CollectionStatistics load(IndexMetadata metadata) {
+        String documents = metadata.get(DOCUMENTS_KEY);
+        String tokens = metadata.get(TOKENS_KEY);
+        String averageLength = metadata.get(AVERAGE_LENGTH_KEY);
+        if (documents == null || tokens == null || averageLength == null) {
+            return null;
+        }
+        return new CollectionStatistics(Long.parseLong(documents), Long.parseLong(tokens), Double.parseDouble(averageLength));
+    }
+
+    public void store(IndexMetadata metadata) {
+        metadata.set(DOCUMENTS_KEY, Long.toString(documents));
+        metadata.set(TOKENS_KEY, Long.toString(tokens));
+        metadata.set(AVERAGE_LENGTH_KEY, Double.toString(averageLength));
+    }
+
+    public long getDocuments() { return documents; }
+    public long getTokens() { return tokens; }
+    public double getAverageLength() { return averageLength; }
+}
@@ -0,0 +1,281 @@
+package com.search.common.index;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongUnaryOperator;
+
+import com.search.common.document.FieldType;
+
+/**
+ * Per-document value ordinals for the facet fields. Columns are indexed by
+ * document ordinal, the position of the document in the docIds column.
+ *
+ * DocValues.bin (memory-mapped at query time):
+ *   int docCount, int fieldCount
+ *   long docIds[docCount]
+ *   per field: int fieldCode, int valueCount, int ordCount,
+ *              int offsets[docCount + 1], int ords[ordCount]
+ *
+ * DocValuesDictionary.txt: "FIELD<TAB>ordinal<TAB>value", values sorted per field.
+ */
+public class DocValues {
+    public static final String FILE_NAME = "DocValues.bin";
+    public static final String DICTIONARY_FILE_NAME = "DocValuesDictionary.txt";
+
+    public static final Set<FieldType> FIELDS = EnumSet.of(FieldType.JOURNAL, FieldType.PUBLISHER, FieldType.CATEGORY);
+
+    private static final int EMPTY = -1;
+
+    private final LongBuffer docIds;
+    private final int[] slots;   // open-addressing docId -> ordinal table, keys read from docIds
+    private final Map<FieldType, Column> columns = new EnumMap<>(FieldType.class);
+    private final Map<String, CompletableFuture<BitSet>> filterCache = new ConcurrentHashMap<>();
+
+    private DocValues(MappedByteBuffer buffer, Map<FieldType, List<String>> dictionary) {
+        int docCount = buffer.getInt();
+        int fieldCount = buffer.getInt();
+
+        docIds = slice(buffer, docCount * Long.BYTES).asLongBuffer();
+        slots = new int[Integer.highestOneBit(Math.max(16, docCount) * 2 - 1) << 1];
+        Arrays.fill(slots, EMPTY);
+        for (int ordinal = 0; ordinal < docCount; ordinal++) {
+            slots[slot(docIds.get(ordinal))] = ordinal;
+        }
+
+        for (int f = 0; f < fieldCount; f++) {
+            FieldType field = fieldForCode(buffer.getInt());
+            int valueCount = buffer.getInt();
+            int ordCount = buffer.getInt();
+            IntBuffer offsets = slice(buffer, (docCount + 1) * Integer.BYTES).asIntBuffer();
+            IntBuffer ords = slice(buffer, ordCount * Integer.BYTES).asIntBuffer();
+
+            List<String> values = dictionary.getOrDefault(field, List.of());
+            columns.put(field, new Column(offsets, ords, values.toArray(new String[valueCount])));
+        }
+    }
+
+    // Returns null for indexes built without doc values
+    public static DocValues open(File indexDir) throws IOException {
+        Path file = indexDir.toPath().resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        Map<FieldType, List<String>> dictionary = new EnumMap<>(FieldType.class);
+        try (BufferedReader reader = Files.newBufferedReader(indexDir.toPath().resolve(DICTIONARY_FILE_NAME), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", 3);
+                dictionary.computeIfAbsent(FieldType.valueOf(parts[0]), k -> new ArrayList<>()).add(parts[2]);
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new DocValues(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), dictionary);
+        }
+    }
+
+    public int getDocumentCount() {
+        return docIds.limit();
+    }
+
+    public boolean hasField(FieldType field) {
+        return columns.containsKey(field);
+    }
+
+    public Column getColumn(FieldType field) {
+        return columns.get(field);
+    }
+
+    // Document ordinal of an index docId, -1 if unknown
+    public int ordinal(long docId) {
+        return slots[slot(docId)];
+    }
+
+    private int slot(long docId) {
+        int mask = slots.length - 1;
+        long h = docId * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (slots[slot] != EMPTY && docIds.get(slots[slot]) != docId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    public long docId(int ordinal) {
+        return docIds.get(ordinal);
+    }
+
+    /**
+     * Documents whose field has the value (case-insensitive), as a bitset over
+     * document ordinals. Bitsets are built once and shared between queries;
+     * the first query to ask for one scans the column without holding a lock,
+     * and queries asking for the same one meanwhile wait for its result.
+     */
+    public BitSet filter(FieldType field, String value) {
+        String key = field + "\t" + KeywordIndex.normalize(value);
+        CompletableFuture<BitSet> bits = filterCache.get(key);
+        if (bits == null) {
+            CompletableFuture<BitSet> created = new CompletableFuture<>();
+            bits = filterCache.putIfAbsent(key, created);
+            if (bits == null) {
+                bits = created;
+                try {
+                    created.complete(scan(field, value));
+                } catch (RuntimeException e) {
+                    filterCache.remove(key, created);
+                    created.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+        return bits.join();
+    }
+
+    private BitSet scan(FieldType field, String value) {
+        BitSet bits = new BitSet(getDocumentCount());
+        Column column = columns.get(field);
+        if (column == null) return bits;
+
+        int valueOrdinal = column.lookup(value);
+        if (valueOrdinal < 0) return bits;
+
+        for (int ordinal = 0; ordinal < getDocumentCount(); ordinal++) {
+            for (int i = column.offsets.get(ordinal); i < column.offsets.get(ordinal + 1); i++) {
+                if (column.ords.get(i) == valueOrdinal) {
+                    bits.set(ordinal);
+                    break;
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Writes doc values for documents in the given ordinal order.
+     * @param values Field -> docId -> raw values (documents without a value may be absent)
+     */
+    public static void write(File indexDir, long[] docIds, Map<FieldType, Map<Long, List<String>>> values) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                 Files.newOutputStream(indexDir.toPath().resolve(FILE_NAME))));
+             BufferedWriter dictionaryWriter = Files.newBufferedWriter(
+                 indexDir.toPath().resolve(DICTIONARY_FILE_NAME), StandardCharsets.UTF_8)) {
+
+            out.writeInt(docIds.length);
+            out.writeInt(values.size());
+            for (long docId : docIds) out.writeLong(docId);
+
+            for (Map.Entry<FieldType, Map<Long, List<String>>> field : values.entrySet()) {
+                // Value ordinals follow the sorted order of the values
+                TreeSet<String> distinct = new TreeSet<>();
+                field.getValue().values().forEach(distinct::addAll);
+                Map<String, Integer> valueOrdinals = new HashMap<>();
+                for (String value : distinct) {
+                    dictionaryWriter.write(field.getKey() + "\t" + valueOrdinals.size() + "\t" + value + "\n");
+                    valueOrdinals.put(value, valueOrdinals.size());
+                }
+
+                int[] offsets = new int[docIds.length + 1];
+                List<Integer> ords = new ArrayList<>();
+                for (int ordinal = 0; ordinal < docIds.length; ordinal++) {
+                    for (String value : new TreeSet<>(field.getValue().getOrDefault(docIds[ordinal], List.of()))) {
+                        ords.add(valueOrdinals.get(value));
+                    }
+                    offsets[ordinal + 1] = ords.size();
+                }
+
+                out.writeInt(field.getKey().getFieldCode());
+                out.writeInt(distinct.size());
+                out.writeInt(ords.size());
+                for (int offset : offsets) out.writeInt(offset);
+                for (int ord : ords) out.writeInt(ord);
+            }
+        }
+    }
+
+    /**
+     * Copies doc values into a new document order.
+     * @param order order[newOrdinal] = old docId, docIdMap maps old to new docIds
+     */
+    public static void rewrite(File sourceDir, File targetDir, long[] order, LongUnaryOperator docIdMap) throws IOException {
+        DocValues source = open(sourceDir);
+        if (source == null) return;
+
+        Map<FieldType, Map<Long, List<String>>> values = new EnumMap<>(FieldType.class);
+        long[] newDocIds = new long[order.length];
+        for (int i = 0; i < order.length; i++) {
+            newDocIds[i] = docIdMap.applyAsLong(order[i]);
+        }
+        for (Map.Entry<FieldType, Column> entry : source.columns.entrySet()) {
+            Map<Long, List<String>> docValues = new HashMap<>();
+            Column column = entry.getValue();
+            for (int i = 0; i < order.length; i++) {
+                int ordinal = source.ordinal(order[i]);
+                if (ordinal < 0) continue;
+
+                List<String> docList = new ArrayList<>();
+                for (int j = column.offsets.get(ordinal); j < column.offsets.get(ordinal + 1); j++) {
+                    docList.add(column.values[column.ords.get(j)]);
+                }
+                docValues.put(newDocIds[i], docList);
+            }
+            values.put(entry.getKey(), docValues);
+        }
+        write(targetDir, newDocIds, values);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int length) {
+        ByteBuffer slice = buffer.slice();
+        slice.limit(length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    private static FieldType fieldForCode(int code) {
+        for (FieldType field : FieldType.values()) {
+            if (field.getFieldCode() == code) return field;
+        }
+        throw new IllegalArgumentException("Unknown field code: " + code);
+    }
+
+    // One field: value ordinals of every document, plus the value dictionary
+    public static class Column {
+        private final IntBuffer offsets;
+        private final IntBuffer ords;
+        private final String[] values;
+        private final Map<String, Integer> normalizedOrdinals = new HashMap<>();
+
+        Column(IntBuffer offsets, IntBuffer ords, String[] values) {
+            this.offsets = offsets;
+            this.ords = ords;
+            this.values = values;
+            // The first of several values that only differ in case wins, as before
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) normalizedOrdinals.putIfAbsent(KeywordIndex.normalize(values[i]), i);
+            }
+        }
+
+        public int getValueCount() { return values.length; }
+        public String getValue(int valueOrdinal) { return values[valueOrdinal]; }
+
+        public int start(int docOrdinal) { return offsets.get(docOrdinal); }
+        public int end(int docOrdinal) { return offsets.get(docOrdinal + 1); }
+        public int ord(int index) { return ords.get(index); }
+
+        // Case-insensitive value lookup, -1 if the value does not occur
+        public int lookup(String value) {
+            return normalizedOrdinals.getOrDefault(KeywordIndex.normalize(value), -1);
+        }
+    }
+}
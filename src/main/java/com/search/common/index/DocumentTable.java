@@ -0,0 +1,185 @@
+package com.search.common.index;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Per-document statistics of DocumentFile.txt ("docId path maxTf len norm [externalId]")
+ * as primitive columns indexed by document ordinal, the line number in the file.
+ *
+ * Paths are not loaded: only their byte range in the file is kept, and a
+ * path is read when a document is actually returned.
+ */
+public class DocumentTable implements Closeable {
+    public static final String FILE_NAME = "DocumentFile.txt";
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final int size;
+    private final long[] docIds;
+    private final double[] maxFreqs;
+    private final double[] lengths;
+    private final double[] norms;
+    private final long[] externalIds;   // null if the index keeps the original ids
+    private final long[] pathOffsets;
+    private final int[] pathLengths;
+
+    // docId -> ordinal, open addressing with linear probing
+    private final long[] slotKeys;
+    private final int[] slotOrdinals;
+
+    private final FileChannel channel;
+
+    private DocumentTable(Columns columns, FileChannel channel) {
+        this.size = columns.size;
+        this.docIds = Arrays.copyOf(columns.docIds, size);
+        this.maxFreqs = Arrays.copyOf(columns.maxFreqs, size);
+        this.lengths = Arrays.copyOf(columns.lengths, size);
+        this.norms = Arrays.copyOf(columns.norms, size);
+        this.externalIds = columns.hasExternalIds ? Arrays.copyOf(columns.externalIds, size) : null;
+        this.pathOffsets = Arrays.copyOf(columns.pathOffsets, size);
+        this.pathLengths = Arrays.copyOf(columns.pathLengths, size);
+        this.channel = channel;
+
+        int capacity = Integer.highestOneBit(Math.max(16, size) * 2 - 1) << 1;
+        slotKeys = new long[capacity];
+        slotOrdinals = new int[capacity];
+        Arrays.fill(slotKeys, EMPTY);
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            int slot = slot(docIds[ordinal]);
+            slotKeys[slot] = docIds[ordinal];
+            slotOrdinals[slot] = ordinal;
+        }
+    }
+
+    public static DocumentTable open(File indexDir) throws IOException {
+        Path file = indexDir.toPath().resolve(FILE_NAME);
+        Columns columns = new Columns();
+
+        // Lines are decoded as ISO-8859-1 so that character and byte offsets agree
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file.toFile()))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            long lineOffset = 0;
+            long position = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                position++;
+                if (b == '\n') {
+                    columns.add(line.toString(StandardCharsets.ISO_8859_1), lineOffset);
+                    line.reset();
+                    lineOffset = position;
+                } else if (b != '\r') {
+                    line.write(b);
+                }
+            }
+            if (line.size() > 0) {
+                columns.add(line.toString(StandardCharsets.ISO_8859_1), lineOffset);
+            }
+        }
+        return new DocumentTable(columns, FileChannel.open(file, StandardOpenOption.READ));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Ordinal of a document id, -1 if the document is not in the index
+    public int ordinal(long docId) {
+        int slot = slot(docId);
+        return slotKeys[slot] == EMPTY ? -1 : slotOrdinals[slot];
+    }
+
+    public long getDocId(int ordinal) { return docIds[ordinal]; }
+    public double getMaxFrequency(int ordinal) { return maxFreqs[ordinal]; }
+    public double getLength(int ordinal) { return lengths[ordinal]; }
+    public double getNorm(int ordinal) { return norms[ordinal]; }
+
+    // Reordered indexes keep the original PMCID as a trailing column
+    public long getExternalId(int ordinal) {
+        return externalIds == null ? docIds[ordinal] : externalIds[ordinal];
+    }
+
+    public double getAverageLength() {
+        if (size == 0) return 1.0;
+        double total = 0;
+        for (int ordinal = 0; ordinal < size; ordinal++) total += lengths[ordinal];
+        return total / size;
+    }
+
+    // Reads the path of the document from DocumentFile.txt
+    public String getPath(int ordinal) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(pathLengths[ordinal]);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, pathOffsets[ordinal] + buffer.position()) < 0) {
+                throw new EOFException("Truncated " + FILE_NAME);
+            }
+        }
+        // DocumentFile.txt is written in the platform charset
+        return new String(buffer.array(), Charset.defaultCharset());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int slot(long docId) {
+        int mask = slotKeys.length - 1;
+        long h = docId * 0x9E3779B97F4A7C15L;
+        int slot = (int) (h ^ (h >>> 32)) & mask;
+        while (slotKeys[slot] != EMPTY && slotKeys[slot] != docId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Growable columns while the file is parsed
+    private static class Columns {
+        int size;
+        long[] docIds = new long[1024];
+        double[] maxFreqs = new double[1024];
+        double[] lengths = new double[1024];
+        double[] norms = new double[1024];
+        long[] externalIds = new long[1024];
+        long[] pathOffsets = new long[1024];
+        int[] pathLengths = new int[1024];
+        boolean hasExternalIds;
+
+        void add(String line, long lineOffset) {
+            if (line.isEmpty()) return;
+            if (size == docIds.length) grow();
+
+            String[] parts = line.split(" ");
+            docIds[size] = Long.parseLong(parts[0]);
+            maxFreqs[size] = Double.parseDouble(parts[2]);
+            lengths[size] = Double.parseDouble(parts[3]);
+            norms[size] = Double.parseDouble(parts[4]);
+            if (parts.length > 5) {
+                externalIds[size] = Long.parseLong(parts[5]);
+                hasExternalIds = true;
+            } else {
+                externalIds[size] = docIds[size];
+            }
+            pathOffsets[size] = lineOffset + parts[0].length() + 1;
+            pathLengths[size] = parts[1].length();
+            size++;
+        }
+
+        private void grow() {
+            int capacity = docIds.length * 2;
+            docIds = Arrays.copyOf(docIds, capacity);
+            maxFreqs = Arrays.copyOf(maxFreqs, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            norms = Arrays.copyOf(norms, capacity);
+            externalIds = Arrays.copyOf(externalIds, capacity);
+            pathOffsets = Arrays.copyOf(pathOffsets, capacity);
+            pathLengths = Arrays.copyOf(pathLengths, capacity);
+        }
+    }
+}
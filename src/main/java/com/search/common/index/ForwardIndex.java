@@ -0,0 +1,227 @@
+package com.search.common.index;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Per-document term vectors (vocabulary term id + tf), used for pseudo-relevance
+ * feedback without re-reading the documents.
+ *
+ * Layout of ForwardIndex.bin:
+ *   records  - per document: varint termCount, then (varint termId gap, varint tf), ids ascending
+ *   table    - per document, by ascending docId: long docId, long offset, int length
+ *   trailer  - long tableOffset, int documentCount
+ *
+ * Term ids are line numbers (from 0) of VocabularyFile.txt.
+ */
+public class ForwardIndex implements Closeable {
+    public static final String FILE_NAME = "ForwardIndex.bin";
+
+    private static final int TABLE_ENTRY_BYTES = Long.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int TRAILER_BYTES = Long.BYTES + Integer.BYTES;
+
+    private final FileChannel channel;
+    private final long[] docIds;
+    private final long[] offsets;
+    private final int[] lengths;
+
+    private ForwardIndex(FileChannel channel, long[] docIds, long[] offsets, int[] lengths) {
+        this.channel = channel;
+        this.docIds = docIds;
+        this.offsets = offsets;
+        this.lengths = lengths;
+    }
+
+    // Returns null for indexes built without term vectors
+    public static ForwardIndex open(File indexDir) throws IOException {
+        Path file = indexDir.toPath().resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer trailer = readFully(channel, channel.size() - TRAILER_BYTES, TRAILER_BYTES);
+            long tableOffset = trailer.getLong();
+            int count = trailer.getInt();
+
+            ByteBuffer table = readFully(channel, tableOffset, count * TABLE_ENTRY_BYTES);
+            long[] docIds = new long[count];
+            long[] offsets = new long[count];
+            int[] lengths = new int[count];
+            for (int i = 0; i < count; i++) {
+                docIds[i] = table.getLong();
+                offsets[i] = table.getLong();
+                lengths[i] = table.getInt();
+            }
+            return new ForwardIndex(channel, docIds, offsets, lengths);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The term vector of the document, or null if it has none
+     */
+    public TermVector lookup(long docId) throws IOException {
+        int slot = Arrays.binarySearch(docIds, docId);
+        if (slot < 0) {
+            return null;
+        }
+        return decode(readFully(channel, offsets[slot], lengths[slot]));
+    }
+
+    public int getDocumentCount() {
+        return docIds.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Copies a forward index, mapping every document and term id.
+     * Terms mapped to a negative id are dropped.
+     */
+    public static void rewrite(File sourceDir, File targetDir,
+                               LongUnaryOperator docIdMap, IntUnaryOperator termIdMap) throws IOException {
+        try (ForwardIndex source = open(sourceDir)) {
+            if (source == null) return;
+
+            try (Writer writer = new Writer(targetDir.toPath().resolve(FILE_NAME))) {
+                for (int slot = 0; slot < source.docIds.length; slot++) {
+                    TermVector vector = decode(readFully(source.channel, source.offsets[slot], source.lengths[slot]));
+
+                    int[] termIds = new int[vector.size()];
+                    int[] tfs = new int[vector.size()];
+                    int kept = 0;
+                    for (int i = 0; i < vector.size(); i++) {
+                        int termId = termIdMap.applyAsInt(vector.getTermId(i));
+                        if (termId < 0) continue;
+                        termIds[kept] = termId;
+                        tfs[kept++] = vector.getTf(i);
+                    }
+                    writer.add(docIdMap.applyAsLong(source.docIds[slot]),
+                               Arrays.copyOf(termIds, kept), Arrays.copyOf(tfs, kept));
+                }
+            }
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Truncated " + FILE_NAME);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static TermVector decode(ByteBuffer buffer) {
+        int count = readVarInt(buffer);
+        int[] termIds = new int[count];
+        int[] tfs = new int[count];
+        int termId = 0;
+        for (int i = 0; i < count; i++) {
+            termId += readVarInt(buffer);
+            termIds[i] = termId;
+            tfs[i] = readVarInt(buffer);
+        }
+        return new TermVector(termIds, tfs);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    // Term ids (ascending) and their frequencies in one document
+    public static class TermVector {
+        private final int[] termIds;
+        private final int[] tfs;
+
+        public TermVector(int[] termIds, int[] tfs) {
+            this.termIds = termIds;
+            this.tfs = tfs;
+        }
+
+        public int size() { return termIds.length; }
+        public int getTermId(int i) { return termIds[i]; }
+        public int getTf(int i) { return tfs[i]; }
+    }
+
+    /**
+     * Appends document records in any order; the docId table is sorted
+     * and written on close.
+     */
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final List<long[]> entries = new ArrayList<>(); // {docId, offset, length}
+        private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+        private long offset;
+
+        public Writer(Path file) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+        }
+
+        // termIds must be ascending
+        public void add(long docId, int[] termIds, int[] tfs) throws IOException {
+            record.reset();
+            writeVarInt(record, termIds.length);
+            int previous = 0;
+            for (int i = 0; i < termIds.length; i++) {
+                writeVarInt(record, termIds[i] - previous);
+                writeVarInt(record, tfs[i]);
+                previous = termIds[i];
+            }
+
+            record.writeTo(out);
+            entries.add(new long[] { docId, offset, record.size() });
+            offset += record.size();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                entries.sort((a, b) -> Long.compare(a[0], b[0]));
+                for (long[] entry : entries) {
+                    out.writeLong(entry[0]);
+                    out.writeLong(entry[1]);
+                    out.writeInt((int) entry[2]);
+                }
+                out.writeLong(offset);
+                out.writeInt(entries.size());
+            } finally {
+                out.close();
+            }
+        }
+
+        private static void writeVarInt(ByteArrayOutputStream stream, int value) {
+            while ((value & ~0x7f) != 0) {
+                stream.write((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            stream.write(value);
+        }
+    }
+}
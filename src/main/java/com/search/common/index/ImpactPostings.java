@@ -0,0 +1,239 @@
+package com.search.common.index;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Impact-ordered copy of the postings for score-at-a-time evaluation. Every
+ * posting's BM25 score (idf included) is quantized at index time to an
+ * integer impact in 1..levels, and each term's list is split into segments
+ * of equal impact, highest impact first. Within a segment doc ids ascend and
+ * are stored as varint gaps. A document's score is approximated by the sum
+ * of its impacts times getScale().
+ *
+ * Layout of ImpactPostings.bin:
+ *   header    - int termCount, int levels, double maxScore
+ *   directory - per termId: long offset, int length (0 for an empty list)
+ *   lists     - per term: int segmentCount, per segment: int impact, int count,
+ *               int byteLength; then the doc id gaps of every segment in order
+ *
+ * The file is mapped once, in chunks as PostingsFile is, and every query
+ * reads the same view: a term's segment headers when it is looked up, the
+ * doc id gaps only as its segment readers reach them.
+ */
+public class ImpactPostings {
+    public static final String FILE_NAME = "ImpactPostings.bin";
+
+    public static final int HEADER_BYTES = 2 * Integer.BYTES + Double.BYTES;
+    public static final int DIRECTORY_ENTRY_BYTES = Long.BYTES + Integer.BYTES;
+
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+    private final int levels;
+    private final double maxScore;
+    private final long[] offsets;
+    private final int[] lengths;
+
+    private ImpactPostings(MappedByteBuffer[] chunks, long size, int levels, double maxScore, long[] offsets, int[] lengths) {
+        this.chunks = chunks;
+        this.size = size;
+        this.levels = levels;
+        this.maxScore = maxScore;
+        this.offsets = offsets;
+        this.lengths = lengths;
+    }
+
+    // Returns null for indexes built without impact postings
+    public static ImpactPostings open(File indexDir) throws IOException {
+        Path file = indexDir.toPath().resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        // The mappings stay valid after the channel is closed
+        MappedByteBuffer[] chunks;
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            chunks = new MappedByteBuffer[(int) ((size + PostingsFile.CHUNK_SIZE - 1) >>> PostingsFile.CHUNK_SHIFT)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = (long) i << PostingsFile.CHUNK_SHIFT;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(PostingsFile.CHUNK_SIZE, size - start));
+            }
+        }
+
+        if (size < HEADER_BYTES) {
+            throw new EOFException("Truncated " + FILE_NAME);
+        }
+        int termCount = getInt(chunks, 0);
+        int levels = getInt(chunks, Integer.BYTES);
+        double maxScore = Double.longBitsToDouble(getLong(chunks, 2 * Integer.BYTES));
+        if (HEADER_BYTES + (long) termCount * DIRECTORY_ENTRY_BYTES > size) {
+            throw new EOFException("Truncated " + FILE_NAME);
+        }
+
+        long[] offsets = new long[termCount];
+        int[] lengths = new int[termCount];
+        long entry = HEADER_BYTES;
+        for (int termId = 0; termId < termCount; termId++) {
+            offsets[termId] = getLong(chunks, entry);
+            lengths[termId] = getInt(chunks, entry + Long.BYTES);
+            entry += DIRECTORY_ENTRY_BYTES;
+        }
+        return new ImpactPostings(chunks, size, levels, maxScore, offsets, lengths);
+    }
+
+    public int getLevels() {
+        return levels;
+    }
+
+    // Score of one unit of impact
+    public double getScale() {
+        return maxScore / levels;
+    }
+
+    // Impact of a score, rounded up so that summed impacts never undercount a posting
+    public static int quantize(double score, double maxScore, int levels) {
+        if (maxScore <= 0) return 1;
+        return (int) Math.max(1, Math.min(levels, Math.ceil(score / maxScore * levels)));
+    }
+
+    /**
+     * @return The segments of the term, or null if its list is empty
+     */
+    public TermImpacts get(int termId) throws IOException {
+        if (termId < 0 || termId >= offsets.length || lengths[termId] == 0) {
+            return null;
+        }
+        if (offsets[termId] + lengths[termId] > size) {
+            throw new EOFException("Truncated " + FILE_NAME);
+        }
+        return TermImpacts.read(chunks, offsets[termId]);
+    }
+
+    // Absolute big-endian reads from the mapping; values may cross chunk boundaries
+
+    private static byte get(MappedByteBuffer[] chunks, long position) {
+        return chunks[(int) (position >>> PostingsFile.CHUNK_SHIFT)].get((int) (position & (PostingsFile.CHUNK_SIZE - 1)));
+    }
+
+    private static int getInt(MappedByteBuffer[] chunks, long position) {
+        int value = 0;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            value = (value << 8) | (get(chunks, position + i) & 0xff);
+        }
+        return value;
+    }
+
+    private static long getLong(MappedByteBuffer[] chunks, long position) {
+        return ((long) getInt(chunks, position) << 32) | (getInt(chunks, position + Integer.BYTES) & 0xFFFFFFFFL);
+    }
+
+    // Gap-decoding cursor over one segment, so that a query can stop inside it
+    public static class SegmentReader {
+        private final MappedByteBuffer[] chunks;
+        private long position;
+        private int remaining;
+        private long docId;
+
+        private SegmentReader(MappedByteBuffer[] chunks, long position, int count) {
+            this.chunks = chunks;
+            this.position = position;
+            this.remaining = count;
+        }
+
+        public int remaining() {
+            return remaining;
+        }
+
+        // Next doc id; only valid while remaining() > 0
+        public long next() {
+            long gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = get(chunks, position++);
+                gap |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            remaining--;
+            return docId += gap;
+        }
+    }
+
+    /**
+     * One term's segments. Headers are parsed up front; the doc ids of a
+     * segment are only decoded when it is visited.
+     */
+    public static class TermImpacts {
+        private final MappedByteBuffer[] chunks;
+        private final int[] impacts;
+        private final int[] counts;
+        private final long[] starts;
+
+        private TermImpacts(MappedByteBuffer[] chunks, int[] impacts, int[] counts, long[] starts) {
+            this.chunks = chunks;
+            this.impacts = impacts;
+            this.counts = counts;
+            this.starts = starts;
+        }
+
+        public int segmentCount() { return impacts.length; }
+        public int impact(int segment) { return impacts[segment]; }
+        public int count(int segment) { return counts[segment]; }
+
+        // Reader over the doc ids of a segment, decoded one at a time
+        public SegmentReader reader(int segment) {
+            return new SegmentReader(chunks, starts[segment], counts[segment]);
+        }
+
+        // Writes one term's segments; docIds of each segment must ascend
+        public static void write(DataOutputStream out, int[] impacts, long[][] docIds) throws IOException {
+            ByteArrayOutputStream gaps = new ByteArrayOutputStream();
+            int[] byteLengths = new int[impacts.length];
+            for (int s = 0; s < impacts.length; s++) {
+                int before = gaps.size();
+                long previous = 0;
+                for (long docId : docIds[s]) {
+                    long gap = docId - previous;
+                    previous = docId;
+                    while ((gap & ~0x7fL) != 0) {
+                        gaps.write((int) ((gap & 0x7f) | 0x80));
+                        gap >>>= 7;
+                    }
+                    gaps.write((int) gap);
+                }
+                byteLengths[s] = gaps.size() - before;
+            }
+
+            out.writeInt(impacts.length);
+            for (int s = 0; s < impacts.length; s++) {
+                out.writeInt(impacts[s]);
+                out.writeInt(docIds[s].length);
+                out.writeInt(byteLengths[s]);
+            }
+            gaps.writeTo(out);
+        }
+
+        static TermImpacts read(MappedByteBuffer[] chunks, long offset) {
+            int segmentCount = getInt(chunks, offset);
+            int[] impacts = new int[segmentCount];
+            int[] counts = new int[segmentCount];
+            long[] starts = new long[segmentCount];
+            long header = offset + Integer.BYTES;
+            long start = header + (long) segmentCount * 3 * Integer.BYTES;
+            for (int s = 0; s < segmentCount; s++) {
+                impacts[s] = getInt(chunks, header);
+                counts[s] = getInt(chunks, header + Integer.BYTES);
+                starts[s] = start;
+                start += getInt(chunks, header + 2 * Integer.BYTES);
+                header += 3 * Integer.BYTES;
+            }
+            return new TermImpacts(chunks, impacts, counts, starts);
+        }
+    }
+}
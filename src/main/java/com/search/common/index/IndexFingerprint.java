@@ -0,0 +1,32 @@
+package com.search.common.index;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Identity of the current contents of an index directory: a hash over the
+ * name, size and modification time of every file in it. Rebuilding,
+ * reordering or pruning into the directory rewrites files and changes it,
+ * so caches keyed by it never serve results of an older index.
+ */
+public final class IndexFingerprint {
+
+    private IndexFingerprint() {}
+
+    public static long of(File indexDir) {
+        File[] files = indexDir.listFiles(File::isFile);
+        if (files == null) {
+            return 0;
+        }
+        Arrays.sort(files, Comparator.comparing(File::getName));
+
+        long hash = 1125899906842597L;
+        for (File file : files) {
+            hash = 31 * hash + file.getName().hashCode();
+            hash = 31 * hash + file.length();
+            hash = 31 * hash + file.lastModified();
+        }
+        return hash;
+    }
+}
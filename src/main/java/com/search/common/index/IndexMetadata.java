@@ -0,0 +1,87 @@
+package com.search.common.index;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+public class IndexMetadata {
+    public static final String FILE_NAME = "IndexMetadata.txt";
+
+    private static final String PROFILE_KEY = "profile";
+    private static final String POSITIONS_KEY = "positions";
+    private static final String FIELDS_KEY = "fields";
+    private static final String SORTED_POSTINGS_KEY = "postings.sorted";
+
+    private final Properties properties;
+
+    private IndexMetadata(Properties properties) {
+        this.properties = properties;
+    }
+
+    // Metadata describing a fresh index built with the given profile
+    public static IndexMetadata forProfile(IndexProfile profile) {
+        IndexMetadata metadata = new IndexMetadata(new Properties());
+        metadata.set(PROFILE_KEY, profile.name());
+        metadata.set(POSITIONS_KEY, Boolean.toString(profile.keepsPositions()));
+        metadata.set(FIELDS_KEY, profile.getFields().stream()
+                .map(Enum::name)
+                .collect(Collectors.joining(",")));
+        return metadata;
+    }
+
+    // Indexes built before metadata existed are treated as FULL
+    public static IndexMetadata load(File indexDir) throws IOException {
+        File file = new File(indexDir, FILE_NAME);
+        if (!file.exists()) {
+            return forProfile(IndexProfile.FULL);
+        }
+
+        Properties properties = new Properties();
+        try (Reader reader = new FileReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return new IndexMetadata(properties);
+    }
+
+    public void store(File indexDir) throws IOException {
+        try (Writer writer = new FileWriter(new File(indexDir, FILE_NAME), StandardCharsets.UTF_8)) {
+            properties.store(writer, "Collection index metadata");
+        }
+    }
+
+    public IndexProfile getProfile() {
+        return IndexProfile.valueOf(properties.getProperty(PROFILE_KEY, IndexProfile.FULL.name()));
+    }
+
+    public boolean hasPositions() {
+        return Boolean.parseBoolean(properties.getProperty(POSITIONS_KEY, "true"));
+    }
+
+    // Whether every posting list is in docId order, null if the index predates the check
+    public Boolean hasSortedPostings() {
+        String sorted = properties.getProperty(SORTED_POSTINGS_KEY);
+        return sorted != null ? Boolean.valueOf(sorted) : null;
+    }
+
+    public void setSortedPostings(boolean sorted) {
+        properties.setProperty(SORTED_POSTINGS_KEY, Boolean.toString(sorted));
+    }
+
+    public String get(String key) {
+        return properties.getProperty(key);
+    }
+
+    public String get(String key, String defaultValue) {
+        return properties.getProperty(key, defaultValue);
+    }
+
+    public void set(String key, String value) {
+        properties.setProperty(key, value);
+    }
+}
@@ -0,0 +1,38 @@
+package com.search.common.index;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.search.common.document.FieldType;
+
+public enum IndexProfile {
+    // Every field with positional information (original index layout)
+    FULL(true, EnumSet.allOf(FieldType.class)),
+    // Text fields only, positions kept for phrase/proximity work
+    TEXT_ONLY(true, EnumSet.of(FieldType.TITLE, FieldType.ABSTRACT, FieldType.BODY)),
+    // Every field, bag-of-words postings
+    NO_POSITIONS(false, EnumSet.allOf(FieldType.class)),
+    // Bag-of-words over text fields, enough for BM25 / VSM ranking
+    RANKING_ONLY(false, EnumSet.of(FieldType.TITLE, FieldType.ABSTRACT, FieldType.BODY));
+
+    private final boolean keepPositions;
+    private final Set<FieldType> fields;
+
+    IndexProfile(boolean keepPositions, EnumSet<FieldType> fields) {
+        this.keepPositions = keepPositions;
+        this.fields = Collections.unmodifiableSet(fields);
+    }
+
+    public boolean keepsPositions() {
+        return keepPositions;
+    }
+
+    public Set<FieldType> getFields() {
+        return fields;
+    }
+
+    public boolean indexes(FieldType fieldType) {
+        return fields.contains(fieldType);
+    }
+}
@@ -0,0 +1,161 @@
+package com.search.common.index;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongUnaryOperator;
+
+import com.search.common.document.FieldType;
+
+/**
+ * Exact-match index over untokenized AUTHOR and JOURNAL values.
+ *
+ * KeywordVocabulary.txt: "FIELD<TAB>value<TAB>df<TAB>pointer", one line per distinct value
+ * KeywordPostings.txt:   "docId docId ...", one line per value, docIds ascending
+ *
+ * Values are normalized (lowercase, single spaces) on both the index and the query side.
+ */
+public class KeywordIndex implements Closeable {
+    public static final String VOCABULARY_FILE_NAME = "KeywordVocabulary.txt";
+    public static final String POSTINGS_FILE_NAME = "KeywordPostings.txt";
+
+    public static final Set<FieldType> FIELDS = EnumSet.of(FieldType.AUTHOR, FieldType.JOURNAL);
+
+    private final Map<String, long[]> dictionary; // key(field, value) -> {df, pointer, length}
+    private final FileChannel postings;
+
+    private KeywordIndex(Map<String, long[]> dictionary, FileChannel postings) {
+        this.dictionary = dictionary;
+        this.postings = postings;
+    }
+
+    // Returns null for indexes built without keywords
+    public static KeywordIndex open(File indexDir) throws IOException {
+        Path vocabulary = indexDir.toPath().resolve(VOCABULARY_FILE_NAME);
+        if (!Files.exists(vocabulary)) {
+            return null;
+        }
+
+        FileChannel postings = FileChannel.open(indexDir.toPath().resolve(POSTINGS_FILE_NAME), StandardOpenOption.READ);
+        Map<String, long[]> dictionary = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(vocabulary, StandardCharsets.UTF_8)) {
+            // Lines are written back to back, so each one ends where the next begins
+            long[] previous = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t");
+                long[] entry = { Long.parseLong(parts[2]), Long.parseLong(parts[3]), 0 };
+                if (previous != null) previous[2] = entry[1] - previous[1];
+                dictionary.put(key(FieldType.valueOf(parts[0]), parts[1]), entry);
+                previous = entry;
+            }
+            if (previous != null) previous[2] = postings.size() - previous[1];
+        } catch (IOException e) {
+            postings.close();
+            throw e;
+        }
+        return new KeywordIndex(dictionary, postings);
+    }
+
+    /**
+     * @return Ascending ids of the documents whose field has exactly this value
+     */
+    public long[] lookup(FieldType field, String value) throws IOException {
+        long[] entry = dictionary.get(key(field, normalize(value)));
+        if (entry == null) {
+            return new long[0];
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) entry[2]);
+        while (buffer.hasRemaining()) {
+            if (postings.read(buffer, entry[1] + buffer.position()) < 0) {
+                throw new EOFException("Truncated " + POSTINGS_FILE_NAME);
+            }
+        }
+        return parseDocIds(new String(buffer.array(), StandardCharsets.US_ASCII).trim(), (int) entry[0]);
+    }
+
+    @Override
+    public void close() throws IOException {
+        postings.close();
+    }
+
+    public static String normalize(String value) {
+        return value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static String key(FieldType field, String normalizedValue) {
+        return field.name() + '\t' + normalizedValue;
+    }
+
+    /**
+     * Writes a keyword index from "key -> docIds" entries, keys as produced by
+     * "FIELD<TAB>value", in the order of the given map.
+     */
+    public static void write(File indexDir, Map<String, long[]> entries) throws IOException {
+        try (BufferedWriter vocabWriter = Files.newBufferedWriter(indexDir.toPath().resolve(VOCABULARY_FILE_NAME), StandardCharsets.UTF_8);
+             BufferedWriter postingWriter = Files.newBufferedWriter(indexDir.toPath().resolve(POSTINGS_FILE_NAME), StandardCharsets.US_ASCII)) {
+
+            long pointer = 0;
+            for (Map.Entry<String, long[]> entry : entries.entrySet()) {
+                long[] docIds = entry.getValue();
+                Arrays.sort(docIds);
+
+                StringBuilder line = new StringBuilder();
+                for (long docId : docIds) {
+                    if (line.length() > 0) line.append(' ');
+                    line.append(docId);
+                }
+                line.append('\n');
+
+                vocabWriter.write(entry.getKey() + "\t" + docIds.length + "\t" + pointer + "\n");
+                postingWriter.write(line.toString());
+                pointer += line.length();
+            }
+        }
+    }
+
+    // Copies a keyword index, mapping every document id
+    public static void rewrite(File sourceDir, File targetDir, LongUnaryOperator docIdMap) throws IOException {
+        Path vocabulary = sourceDir.toPath().resolve(VOCABULARY_FILE_NAME);
+        if (!Files.exists(vocabulary)) return;
+
+        Map<String, long[]> entries = new LinkedHashMap<>();
+        try (BufferedReader vocabReader = Files.newBufferedReader(vocabulary, StandardCharsets.UTF_8);
+             BufferedReader postingReader = Files.newBufferedReader(sourceDir.toPath().resolve(POSTINGS_FILE_NAME), StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = vocabReader.readLine()) != null) {
+                String[] parts = line.split("\t");
+                long[] docIds = parseDocIds(postingReader.readLine(), Integer.parseInt(parts[2]));
+                for (int i = 0; i < docIds.length; i++) {
+                    docIds[i] = docIdMap.applyAsLong(docIds[i]);
+                }
+                entries.put(parts[0] + "\t" + parts[1], docIds);
+            }
+        }
+        write(targetDir, entries);
+    }
+
+    private static long[] parseDocIds(String line, int df) {
+        long[] docIds = new long[df];
+        int start = 0;
+        for (int i = 0; i < df; i++) {
+            int end = line.indexOf(' ', start);
+            if (end < 0) end = line.length();
+            docIds[i] = Long.parseLong(line.substring(start, end));
+            start = end + 1;
+        }
+        return docIds;
+    }
+}
@@ -0,0 +1,94 @@
+package com.search.common.index;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only memory-mapped view of PostingFile.txt, opened once per index and
+ * shared by all queries. The file is mapped in CHUNK_SIZE pieces, since a
+ * single mapping cannot exceed 2GB; lines may cross chunk boundaries.
+ *
+ * Reads only use absolute positions, so concurrent queries need no locking.
+ */
+public class PostingsFile {
+    static final int CHUNK_SHIFT = 30;
+    static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+
+    private PostingsFile(MappedByteBuffer[] chunks, long size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    public static PostingsFile open(Path file) throws IOException {
+        // The mappings stay valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = (long) i << CHUNK_SHIFT;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, size - start));
+            }
+            return new PostingsFile(chunks, size);
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Parses df posting lines ("docId tf [positions]") starting at the pointer
+     * and passes docId and tf of each to the consumer.
+     */
+    public void forEach(long pointer, int df, BitmapPostings.PostingConsumer consumer) throws IOException {
+        long position = pointer;
+        for (int i = 0; i < df; i++) {
+            long docId = 0;
+            byte b;
+            while ((b = get(position++)) != ' ') {
+                docId = docId * 10 + digit(b, position);
+            }
+
+            // Indexes built without positions end the line after the tf
+            int tf = 0;
+            while (position < size && (b = get(position++)) != ' ' && b != '\n') {
+                tf = tf * 10 + digit(b, position);
+            }
+            while (b != '\n' && position < size) {
+                b = get(position++);
+            }
+
+            consumer.accept(docId, tf);
+        }
+    }
+
+    // Decodes count posting lines starting at position into the front of the arrays
+    public void read(long position, int count, long[] docIds, int[] tfs) throws IOException {
+        int[] size = { 0 };
+        forEach(position, count, (docId, tf) -> {
+            docIds[size[0]] = docId;
+            tfs[size[0]++] = tf;
+        });
+    }
+
+    private byte get(long position) throws IOException {
+        if (position >= size) {
+            throw new EOFException("Truncated posting list at " + position);
+        }
+        return chunks[(int) (position >>> CHUNK_SHIFT)].get((int) (position & (CHUNK_SIZE - 1)));
+    }
+
+    private static int digit(byte b, long position) throws IOException {
+        if (b < '0' || b > '9') {
+            throw new IOException("Invalid posting line near " + (position - 1));
+        }
+        return b - '0';
+    }
+}
@@ -0,0 +1,12 @@
+package com.search.common.index;
+
+/**
+ * Per-posting score factors whose maxima are stored with the index, before
+ * idf and query weight are applied:
+ *   BM25 = tf * (K1 + 1) / (tf + K1 * (1 - B + B * dl / avgdl))
+ *   VSM  = tf / (maxTf * norm)
+ */
+public enum ScoreFactor {
+    BM25,
+    VSM
+}
@@ -8,6 +8,9 @@ import java.util.HashSet;
 import mitos.stemmer.Stemmer;
 
 public abstract class TokenStream implements Closeable {
+    // The stemmer library keeps one shared Porter stemmer buffer, so concurrent streams take turns
+    private static final Object STEMMER_LOCK = new Object();
+
     protected BufferedReader reader; 
     private String currentLine;      
     private int tokenIndex;          
@@ -22,7 +25,9 @@ public abstract class TokenStream implements Closeable {
         this.stopWords = new HashSet<>();
         this.tokenIndex = 0;
         this.tokens = new String[0];
-        Stemmer.Initialize();
+        synchronized (STEMMER_LOCK) {
+            Stemmer.Initialize();
+        }
     }
 
     // Constructor initializes the BufferedReader and loads stop words
@@ -44,7 +49,9 @@ public abstract class TokenStream implements Closeable {
             tokens = tokenize(currentLine);
             tokenIndex = 0; 
         }
-        return Stemmer.Stem(tokens[tokenIndex++]); // Return the next token
+        synchronized (STEMMER_LOCK) {
+            return Stemmer.Stem(tokens[tokenIndex++]); // Return the next token
+        }
     }
 
     // Closes the reader to release resources
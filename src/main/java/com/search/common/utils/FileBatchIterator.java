@@ -25,6 +25,11 @@ public class FileBatchIterator implements Iterator<List<Path>> {
         this.batchSize = batchSize;
     }
 
+    public FileBatchIterator(List<Path> files, int batchSize) {
+        this.fileQueue = new ArrayDeque<>(files);
+        this.batchSize = batchSize;
+    }
+
     private void collectFiles(Path directory, Queue<Path> fileQueue) throws IOException {
         // Walk through the directory tree recursively
         Files.walk(directory)
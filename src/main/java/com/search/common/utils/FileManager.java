@@ -5,6 +5,9 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class FileManager {
 
@@ -87,6 +90,15 @@ public class FileManager {
         }
     }
 
+    // Lists every regular file below startPath, in a stable order
+    public static List<Path> listFiles(Path startPath) throws IOException {
+        try (Stream<Path> paths = Files.walk(startPath)) {
+            return paths.filter(Files::isRegularFile)
+                        .sorted()
+                        .collect(Collectors.toList());
+        }
+    }
+
     public static long countFilesInDir(Path startPath)
     {
         long count = 0;
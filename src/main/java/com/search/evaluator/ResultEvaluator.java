@@ -34,9 +34,10 @@ public class ResultEvaluator {
         }
     }
 
-    public void evaluate(List<String> resultPaths, String outputPath) throws IOException {
+    public Summary evaluate(List<String> resultPaths, String outputPath) throws IOException {
         // Read and combine all result files
         Map<Integer, List<ResultEntry>> results = readResults(resultPaths);
+        Summary summary = new Summary();
         
         try (PrintWriter writer = new PrintWriter(new FileWriter(outputPath))) {
             writer.println("QUERY_NO\tBPREF_VALUE\tAVEP_VALUE\tNDCG_VALUE");
@@ -55,8 +56,11 @@ public class ResultEvaluator {
                 double ndcg = calculateNDCG(rankedResults, queryQrels);
                 
                 writer.printf("%d\t%.6f\t%.6f\t%.6f\n", queryId, bpref, avep, ndcg);
+                summary.add(bpref, avep, ndcg);
             }
         }
+
+        return summary;
     }
 
     private Map<Integer, List<ResultEntry>> readResults(List<String> paths) throws IOException {
@@ -169,6 +173,32 @@ public class ResultEvaluator {
         return (idcg > 0) ? dcg / idcg : 0.0;
     }
 
+    // Mean scores over the evaluated queries
+    public static class Summary {
+        private int queries;
+        private double bprefSum;
+        private double avepSum;
+        private double ndcgSum;
+
+        void add(double bpref, double avep, double ndcg) {
+            queries++;
+            bprefSum += bpref;
+            avepSum += avep;
+            ndcgSum += ndcg;
+        }
+
+        public int getQueryCount() { return queries; }
+        public double getMeanBpref() { return queries > 0 ? bprefSum / queries : 0.0; }
+        public double getMeanAvep() { return queries > 0 ? avepSum / queries : 0.0; }
+        public double getMeanNdcg() { return queries > 0 ? ndcgSum / queries : 0.0; }
+
+        @Override
+        public String toString() {
+            return String.format("queries=%d bpref=%.4f MAP=%.4f nDCG=%.4f",
+                queries, getMeanBpref(), getMeanAvep(), getMeanNdcg());
+        }
+    }
+
     private static class ResultEntry {
         final String docId;
         final int rank;
@@ -0,0 +1,48 @@
+package com.search.indexer;
+
+import com.search.common.utils.FileManager;
+import com.search.common.utils.Timer;
+import com.search.indexer.utils.DocIdReorderer;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class DocIdReorderMain {
+
+    public static void main(String[] args) {
+        try {
+            System.out.println("Select the Collection Index directory to reorder:");
+            File sourceDir = FileManager.showFileChooserForDirectory(FileManager.RESULT_DIR);
+            if (sourceDir == null) throw new Exception("No collection index selected");
+
+            String targetDir = FileManager.RESULT_DIR + "CollectionIndex_reordered";
+            FileManager.ensureDirectoryExists(targetDir);
+
+            System.out.println("Reordering document ids using " + Runtime.getRuntime().availableProcessors() + " threads");
+
+            Timer timer = new Timer();
+            timer.start();
+            DocIdReorderer reorderer = new DocIdReorderer(sourceDir.getAbsolutePath(), targetDir);
+            reorderer.reorder();
+            timer.stop();
+
+            long sizeBefore = Files.size(sourceDir.toPath().resolve("PostingFile.txt"));
+            long sizeAfter = Files.size(Path.of(targetDir, "PostingFile.txt"));
+
+            System.out.println("Reordering was done in " + timer.getElapsedTimeSeconds() + " sec");
+            System.out.printf("Posting file: %d -> %d bytes (%.1f%%)%n", sizeBefore, sizeAfter,
+                sizeBefore > 0 ? 100.0 * sizeAfter / sizeBefore : 0.0);
+            // The text postings store absolute ids; the gaps are what a delta-coded list would hold
+            System.out.printf("Average log2 docId gap: %.2f -> %.2f bits%n",
+                reorderer.getGapBitsBefore(), reorderer.getGapBitsAfter());
+            System.out.printf("Gaps as varints: %d -> %d bytes (%.1f%%)%n", reorderer.getGapBytesBefore(),
+                reorderer.getGapBytesAfter(),
+                reorderer.getGapBytesBefore() > 0 ? 100.0 * reorderer.getGapBytesAfter() / reorderer.getGapBytesBefore() : 0.0);
+            System.out.println("Reordered index written to: " + targetDir);
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
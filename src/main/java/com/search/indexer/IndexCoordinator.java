@@ -0,0 +1,272 @@
+package com.search.indexer;
+
+import com.search.common.index.IndexProfile;
+import com.search.common.utils.FileManager;
+import com.search.indexer.utils.DuplicateDetector;
+import com.search.indexer.utils.FileBatchCollector;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Splits the document directory across worker JVMs (IndexerMain --worker).
+ * Each worker writes its sorted batch runs and a manifest into its own work
+ * directory; the coordinator collects the runs, in partition order, for the
+ * final merge. Work directories live under RESULT_DIR, so workers on other
+ * hosts, started over ssh, only need that directory and the classpath on a
+ * shared filesystem.
+ *
+ * Near-duplicates are detected over the whole collection: workers write the
+ * MinHash signatures of their documents and the coordinator registers them
+ * in partition order, which is collection order, so the clusters are the
+ * same as in a single JVM whatever the number of workers. Under COLLAPSE the
+ * duplicates have to be known before indexing, so the workers first run a
+ * signature-only pass (IndexerMain --signatures) and then leave the
+ * duplicates the coordinator lists out of their runs.
+ */
+public class IndexCoordinator {
+    public static final String WORKER_FLAG = "--worker";
+    public static final String SIGNATURE_FLAG = "--signatures";
+
+    private static final String FILE_LIST_NAME = "files.txt";
+    private static final String MANIFEST_NAME = "runs.txt";
+    private static final String SIGNATURES_NAME = "signatures.bin";
+    private static final String COLLAPSED_NAME = "collapsed.txt";
+
+    private final File stopwordDirectory;
+    private final IndexProfile profile;
+    private final DuplicateDetector.Policy duplicatePolicy;
+    private final List<String> hosts;
+    private final List<String> workDirectories = new ArrayList<>();
+    private DuplicateDetector duplicateDetector;
+
+    /**
+     * @param hosts Hosts to start workers on over ssh, round-robin; empty to start them on this machine
+     */
+    public IndexCoordinator(File stopwordDirectory, IndexProfile profile, DuplicateDetector.Policy duplicatePolicy,
+                            List<String> hosts) {
+        this.stopwordDirectory = stopwordDirectory;
+        this.profile = profile;
+        this.duplicatePolicy = duplicatePolicy;
+        this.hosts = hosts;
+    }
+
+    public void run(File documentDirectory, int workerCount, FileBatchCollector fileBatchCollector)
+            throws IOException, InterruptedException {
+        List<Path> files = FileManager.listFiles(documentDirectory.toPath());
+        int filesPerWorker = (files.size() + workerCount - 1) / workerCount;
+
+        List<WorkerTask> tasks = new ArrayList<>();
+        for (int worker = 0; worker < workerCount && worker * filesPerWorker < files.size(); worker++) {
+            String workDirectory = FileManager.RESULT_DIR + "worker_" + worker;
+            FileManager.deleteDirectory(new File(workDirectory));
+            FileManager.ensureDirectoryExists(workDirectory);
+            workDirectories.add(workDirectory);
+
+            // Contiguous slices keep each worker's runs in directory order
+            List<Path> slice = files.subList(worker * filesPerWorker,
+                                             Math.min(files.size(), (worker + 1) * filesPerWorker));
+            WorkerTask task = new WorkerTask(WORKER_FLAG, stopwordDirectory, new File(workDirectory, FILE_LIST_NAME),
+                                             workDirectory, profile, duplicatePolicy);
+            task.writeFiles(slice);
+            tasks.add(task);
+        }
+
+        if (duplicatePolicy == DuplicateDetector.Policy.COLLAPSE) {
+            runWorkers(tasks, SIGNATURE_FLAG);
+            detectDuplicates(true);
+        }
+        runWorkers(tasks, WORKER_FLAG);
+        if (duplicatePolicy == DuplicateDetector.Policy.FLAG) {
+            detectDuplicates(false);
+        }
+
+        // Runs are added in partition order, then batch order within each worker
+        for (String workDirectory : workDirectories) {
+            for (String line : Files.readAllLines(Paths.get(workDirectory, MANIFEST_NAME))) {
+                fileBatchCollector.add(Arrays.asList(line.split("\t")));
+            }
+        }
+    }
+
+    // Starts one worker per task in the given mode and waits for all of them
+    private void runWorkers(List<WorkerTask> tasks, String flag) throws IOException, InterruptedException {
+        List<Process> processes = new ArrayList<>();
+        for (int worker = 0; worker < tasks.size(); worker++) {
+            WorkerTask task = tasks.get(worker).withFlag(flag);
+            String host = hosts.isEmpty() ? null : hosts.get(worker % hosts.size());
+            System.out.println("Starting worker " + worker + " " + flag + (host != null ? " on " + host : ""));
+            processes.add(new ProcessBuilder(workerCommand(task, host))
+                .directory(new File(FileManager.PARENT_DIR))
+                .inheritIO()
+                .start());
+        }
+
+        for (int worker = 0; worker < processes.size(); worker++) {
+            int exitCode = processes.get(worker).waitFor();
+            if (exitCode != 0) {
+                throw new IOException("Worker " + worker + " failed with exit code " + exitCode);
+            }
+        }
+    }
+
+    // Registers every worker's signatures in partition order; optionally tells each worker what to leave out
+    private void detectDuplicates(boolean writeCollapsed) throws IOException {
+        duplicateDetector = new DuplicateDetector();
+        for (String workDirectory : workDirectories) {
+            List<Long> duplicates;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Files.newInputStream(Paths.get(workDirectory, SIGNATURES_NAME))))) {
+                duplicates = duplicateDetector.registerSignatures(in);
+            }
+            if (writeCollapsed) {
+                Files.write(Paths.get(workDirectory, COLLAPSED_NAME),
+                            duplicates.stream().map(String::valueOf).collect(Collectors.toList()),
+                            StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    // Clusters over the whole collection; a no-op when detection is off
+    public void writeDuplicateClusters(String resultDir) throws IOException {
+        if (duplicateDetector == null) return;
+        duplicateDetector.writeClusters(resultDir);
+        System.out.println("Near-duplicates found: " + duplicateDetector.getDuplicateCount());
+    }
+
+    public void cleanup() {
+        for (String workDirectory : workDirectories) {
+            FileManager.deleteDirectory(new File(workDirectory));
+        }
+    }
+
+    // The worker JVM command, wrapped in ssh for a remote host
+    private static List<String> workerCommand(WorkerTask task, String host) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+
+        // Workers inherit the coordinator's heap settings
+        for (String jvmArg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (jvmArg.startsWith("-Xmx") || jvmArg.startsWith("-Xms")) {
+                command.add(jvmArg);
+            }
+        }
+
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(IndexerMain.class.getName());
+        command.addAll(task.toArgs());
+        if (host == null) {
+            return command;
+        }
+
+        // The remote shell runs the same command from the same (shared) directory
+        StringBuilder remote = new StringBuilder("cd ").append(shellQuote(new File(FileManager.PARENT_DIR).getAbsolutePath()));
+        remote.append(" &&");
+        for (String argument : command) {
+            remote.append(' ').append(shellQuote(argument));
+        }
+        return List.of("ssh", host, remote.toString());
+    }
+
+    private static String shellQuote(String argument) {
+        return "'" + argument.replace("'", "'\\''") + "'";
+    }
+
+    // Arguments of a single worker process
+    public static class WorkerTask {
+        private final String flag;
+        private final File stopwordDirectory;
+        private final File fileList;
+        private final String workDirectory;
+        private final IndexProfile profile;
+        private final DuplicateDetector.Policy duplicatePolicy;
+
+        WorkerTask(String flag, File stopwordDirectory, File fileList, String workDirectory,
+                   IndexProfile profile, DuplicateDetector.Policy duplicatePolicy) {
+            this.flag = flag;
+            this.stopwordDirectory = stopwordDirectory;
+            this.fileList = fileList;
+            this.workDirectory = workDirectory;
+            this.profile = profile;
+            this.duplicatePolicy = duplicatePolicy;
+        }
+
+        // --worker|--signatures <stopwordDir> <fileList> <workDir> <profile> <duplicatePolicy>
+        public static WorkerTask fromArgs(String[] args) {
+            if (args.length != 6 || !(args[0].equals(WORKER_FLAG) || args[0].equals(SIGNATURE_FLAG))) {
+                throw new IllegalArgumentException("Usage: " + WORKER_FLAG + "|" + SIGNATURE_FLAG
+                    + " <stopwordDir> <fileList> <workDir> <profile> <duplicatePolicy>");
+            }
+            return new WorkerTask(args[0], new File(args[1]), new File(args[2]), args[3],
+                                  IndexProfile.valueOf(args[4]), DuplicateDetector.Policy.valueOf(args[5]));
+        }
+
+        WorkerTask withFlag(String flag) {
+            return new WorkerTask(flag, stopwordDirectory, fileList, workDirectory, profile, duplicatePolicy);
+        }
+
+        List<String> toArgs() {
+            return List.of(flag,
+                           stopwordDirectory.getAbsolutePath(),
+                           fileList.getAbsolutePath(),
+                           workDirectory,
+                           profile.name(),
+                           duplicatePolicy.name());
+        }
+
+        void writeFiles(List<Path> files) throws IOException {
+            Files.write(fileList.toPath(),
+                        files.stream().map(Path::toString).collect(Collectors.toList()),
+                        StandardCharsets.UTF_8);
+        }
+
+        public List<Path> readFiles() throws IOException {
+            return Files.readAllLines(fileList.toPath(), StandardCharsets.UTF_8).stream()
+                        .map(Paths::get)
+                        .collect(Collectors.toList());
+        }
+
+        // One "vocab<TAB>postings<TAB>documents<TAB>vectors<TAB>keywords" line per written batch
+        public void writeManifest(FileBatchCollector fileBatchCollector) throws IOException {
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < fileBatchCollector.getVocabPaths().size(); i++) {
+                lines.add(fileBatchCollector.getVocabPaths().get(i) + "\t"
+                        + fileBatchCollector.getPostingsPaths().get(i) + "\t"
+                        + fileBatchCollector.getDocPaths().get(i) + "\t"
+                        + fileBatchCollector.getForwardPaths().get(i) + "\t"
+                        + fileBatchCollector.getKeywordPaths().get(i));
+            }
+            Files.write(Paths.get(workDirectory, MANIFEST_NAME), lines, StandardCharsets.UTF_8);
+        }
+
+        // MinHash signatures of the worker's documents, registered by the coordinator
+        public Path getSignatureFile() {
+            return Paths.get(workDirectory, SIGNATURES_NAME);
+        }
+
+        // DocIds the coordinator found to duplicate earlier documents, empty before it has run detection
+        public Set<Long> readCollapsed() throws IOException {
+            Path collapsed = Paths.get(workDirectory, COLLAPSED_NAME);
+            if (!Files.exists(collapsed)) return Set.of();
+            return Files.readAllLines(collapsed, StandardCharsets.UTF_8).stream()
+                        .map(Long::valueOf)
+                        .collect(Collectors.toSet());
+        }
+
+        public boolean isSignaturePass() { return flag.equals(SIGNATURE_FLAG); }
+        public File getStopwordDirectory() { return stopwordDirectory; }
+        public String getWorkDirectory() { return workDirectory; }
+        public IndexProfile getProfile() { return profile; }
+        public DuplicateDetector.Policy getDuplicatePolicy() { return duplicatePolicy; }
+    }
+}
@@ -0,0 +1,138 @@
+package com.search.indexer;
+
+import com.search.common.index.BitmapPostings;
+import com.search.common.utils.FileManager;
+import com.search.common.utils.StopWordManager;
+import com.search.common.utils.Timer;
+import com.search.evaluator.ResultEvaluator;
+import com.search.indexer.utils.IndexPruner;
+import com.search.query.QueryEvaluatorMain;
+import com.search.query.evaluation.OkapiBM25;
+import com.search.query.evaluation.QueryEvaluator;
+import com.search.query.model.Query;
+import com.search.query.reader.QueryReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import javax.swing.JOptionPane;
+
+public class IndexPrunerMain {
+
+    public static void main(String[] args) {
+        try {
+            System.out.println("Select the Collection Index directory to prune:");
+            File sourceDir = FileManager.showFileChooserForDirectory(FileManager.RESULT_DIR);
+            if (sourceDir == null) throw new Exception("No collection index selected");
+
+            IndexPruner.Mode[] modes = IndexPruner.Mode.values();
+            int modeChoice = JOptionPane.showOptionDialog(
+                null,
+                "Choose pruning threshold type:",
+                "Pruning Mode",
+                JOptionPane.DEFAULT_OPTION,
+                JOptionPane.QUESTION_MESSAGE,
+                null,
+                modes,
+                IndexPruner.Mode.PER_TERM
+            );
+            IndexPruner.Mode mode = modeChoice >= 0 ? modes[modeChoice] : IndexPruner.Mode.PER_TERM;
+
+            String defaultThreshold = (mode == IndexPruner.Mode.PER_TERM) ? "0.1" : "1.0";
+            String input = JOptionPane.showInputDialog(null,
+                mode == IndexPruner.Mode.PER_TERM
+                    ? "Fraction of each term's highest BM25 impact to keep (0-1):"
+                    : "Minimum BM25 impact to keep:",
+                defaultThreshold);
+            double threshold = Double.parseDouble(input != null ? input.trim() : defaultThreshold);
+
+            String targetDir = FileManager.RESULT_DIR + "CollectionIndex_pruned_" + mode + "_" + threshold;
+            FileManager.ensureDirectoryExists(targetDir);
+
+            Timer timer = new Timer();
+            timer.start();
+            IndexPruner pruner = new IndexPruner(sourceDir.getAbsolutePath(), targetDir);
+            pruner.prune(mode, threshold);
+            timer.stop();
+
+            System.out.println("Pruning was done in " + timer.getElapsedTimeSeconds() + " sec");
+            System.out.printf("Terms:    %d -> %d%n", pruner.getTermsBefore(), pruner.getTermsAfter());
+            System.out.printf("Postings: %d -> %d (%.1f%%)%n", pruner.getPostingsBefore(), pruner.getPostingsAfter(),
+                percent(pruner.getPostingsAfter(), pruner.getPostingsBefore()));
+
+            long sizeBefore = indexSize(sourceDir.toPath());
+            long sizeAfter = indexSize(Path.of(targetDir));
+            System.out.printf("Index size: %d -> %d bytes (%.1f%%)%n", sizeBefore, sizeAfter, percent(sizeAfter, sizeBefore));
+
+            reportEffectiveness(sourceDir.getAbsolutePath(), targetDir);
+
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(null, "Error: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            e.printStackTrace();
+        }
+    }
+
+    // Runs the topics against both indexes and compares the evaluation scores
+    private static void reportEffectiveness(String sourceDir, String targetDir) throws Exception {
+        int answer = JOptionPane.showConfirmDialog(null,
+            "Evaluate the pruned index against topics and qrels?",
+            "Effectiveness Report",
+            JOptionPane.YES_NO_OPTION);
+        if (answer != JOptionPane.YES_OPTION) return;
+
+        System.out.println("Select the StopWords directory:");
+        StopWordManager.loadStopWords(FileManager.showFileChooserForDirectory(FileManager.RESOURCE_DIR));
+
+        System.out.println("Select the topics file:");
+        File topicsFile = FileManager.showFileChooserForFile(FileManager.RESOURCE_DIR);
+        System.out.println("Select the qrels file:");
+        File qrelsFile = FileManager.showFileChooserForFile(FileManager.RESOURCE_DIR);
+        if (topicsFile == null || qrelsFile == null) throw new Exception("Topics and qrels are required for the report");
+
+        ResultEvaluator resultEvaluator = new ResultEvaluator(qrelsFile.getAbsolutePath());
+
+        String reportDir = FileManager.RESULT_DIR + "pruning";
+        FileManager.ensureDirectoryExists(reportDir);
+
+        // Both topic sources the query tool offers, since pruning can affect them differently
+        for (boolean summary : new boolean[] { true, false }) {
+            String source = summary ? "summary" : "description";
+            List<Query> queries = QueryReader.createForXMLFile(topicsFile, summary).read();
+
+            ResultEvaluator.Summary before = evaluateIndex(sourceDir, queries, resultEvaluator, reportDir, "original_" + source);
+            ResultEvaluator.Summary after = evaluateIndex(targetDir, queries, resultEvaluator, reportDir, "pruned_" + source);
+
+            System.out.println("Topic " + source + "s:");
+            System.out.println("  Original index: " + before);
+            System.out.println("  Pruned index:   " + after);
+            System.out.printf("  MAP retained: %.1f%%, nDCG retained: %.1f%%%n",
+                percent(after.getMeanAvep(), before.getMeanAvep()),
+                percent(after.getMeanNdcg(), before.getMeanNdcg()));
+        }
+    }
+
+    private static ResultEvaluator.Summary evaluateIndex(String indexDir, List<Query> queries,
+                                                         ResultEvaluator resultEvaluator,
+                                                         String reportDir, String label) throws IOException {
+        QueryEvaluator evaluator = new QueryEvaluator(indexDir, new OkapiBM25());
+        String runFile = reportDir + File.separator + "query_results_" + label + ".tsv";
+        String evalFile = reportDir + File.separator + "eval_results_" + label + ".txt";
+
+        QueryEvaluatorMain.processQueries(evaluator, queries, runFile);
+        return resultEvaluator.evaluate(List.of(runFile), evalFile);
+    }
+
+    // Vocabulary and postings, text and bitmap lists
+    private static long indexSize(Path indexDir) throws IOException {
+        Path bitmaps = indexDir.resolve(BitmapPostings.FILE_NAME);
+        return Files.size(indexDir.resolve("VocabularyFile.txt")) + Files.size(indexDir.resolve("PostingFile.txt"))
+            + (Files.exists(bitmaps) ? Files.size(bitmaps) : 0);
+    }
+
+    private static double percent(double part, double whole) {
+        return whole > 0 ? 100.0 * part / whole : 0.0;
+    }
+}
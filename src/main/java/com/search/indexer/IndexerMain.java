@@ -2,21 +2,44 @@ package com.search.indexer;
 
 import com.search.common.document.Document;
 import com.search.common.document.DocumentFactory;
+import com.search.common.index.CollectionStatistics;
+import com.search.common.index.IndexMetadata;
+import com.search.common.index.IndexProfile;
 import com.search.common.utils.FileBatchIterator;
 import com.search.common.utils.FileManager;
 import com.search.common.utils.StopWordManager;
 import com.search.common.utils.Timer;
+import com.search.indexer.events.BatchProcessEvent;
+import com.search.indexer.events.BatchWriteEvent;
+import com.search.indexer.events.IndexStageEvent;
+import com.search.indexer.utils.BitmapPostingsBuilder;
+import com.search.indexer.utils.DocValuesBuilder;
+import com.search.indexer.utils.DuplicateDetector;
 import com.search.indexer.utils.FileBuilder;
 import com.search.indexer.utils.FileMerger;
+import com.search.indexer.utils.ForwardIndexBuilder;
+import com.search.indexer.utils.ImpactPostingsBuilder;
+import com.search.indexer.utils.KeywordIndexBuilder;
+import com.search.indexer.utils.TermBoundsBuilder;
 import com.search.indexer.utils.VectorNormCalculator;
 import com.search.indexer.model.Corpus;
 import com.search.indexer.utils.FileBatchCollector;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.JOptionPane;
 
 
 public class IndexerMain {
@@ -29,9 +52,19 @@ public class IndexerMain {
     private static final ExecutorService fileWritingExecutor = Executors.newSingleThreadExecutor();
     
     // Track active batches to prevent memory overload
-    private static final Semaphore memorySemaphore = new Semaphore(2); // Allow 2 batches in memory
+    private static final int BATCHES_IN_MEMORY = 2;
+    private static final Semaphore memorySemaphore = new Semaphore(BATCHES_IN_MEMORY);
+
+    // Batches handed to the writer thread but not yet started (reported in BatchWriteEvent)
+    private static final AtomicInteger pendingWrites = new AtomicInteger();
 
     public static void main(String[] args) {
+        if (args.length > 0 && (args[0].equals(IndexCoordinator.WORKER_FLAG)
+                                || args[0].equals(IndexCoordinator.SIGNATURE_FLAG))) {
+            runWorker(args);
+            return;
+        }
+
         try {
             System.out.println("JVM Memory: " + Runtime.getRuntime().maxMemory() / (1024 * 1024) + "MB");
             System.out.println("Using conservative batch size: " + BATCH_SIZE);
@@ -43,112 +76,101 @@ public class IndexerMain {
             System.out.println("Select the directory containing the XML documents:");
             File documentDirectory = FileManager.showFileChooserForDirectory(FileManager.RESOURCE_DIR);
 
-            FileBatchIterator fileBatchIterator = FileManager.getFileBatchIterator(documentDirectory, BATCH_SIZE);
-            List<Future<?>> futures = new ArrayList<>();
+            final IndexProfile profile = selectProfile();
+            System.out.println("Using index profile: " + profile + " (fields: " + profile.getFields() + ", positions: " + profile.keepsPositions() + ")");
+
+            final DuplicateDetector.Policy duplicatePolicy = selectDuplicatePolicy();
+            System.out.println("Near-duplicate handling: " + duplicatePolicy);
+
+            final int workerCount = selectWorkerCount();
+            final List<String> workerHosts = workerCount > 1 ? selectWorkerHosts() : List.of();
 
             FileBatchCollector fileBatchCollector = new FileBatchCollector();
+            DuplicateDetector duplicateDetector = null;
+            IndexCoordinator coordinator = null;
             Timer timer  = new Timer();
 
             timer.start();
-            
-            while (fileBatchIterator.hasNext()) {
-                final List<Path> xmlFiles = fileBatchIterator.next();
-                final int currentBatchNo = futures.size();
-                
-                // Wait for memory availability
-                memorySemaphore.acquire();
-                
-                futures.add(processingExecutor.submit(() -> {
-                    try {
-                        System.out.println("Processing batch " + currentBatchNo + " (" + xmlFiles.size() + " files)");
-                        
-                        // Process documents sequentially (stemmer limitation)
-                        List<Document> documents = new ArrayList<>();
-                        for (Path xmlFile : xmlFiles) {
-                            try {
-                                Document doc = DocumentFactory.createDocument(xmlFile.toFile());
-                                documents.add(doc);
-                            } catch (Exception e) {
-                                System.err.println("Error processing file in batch " + currentBatchNo + ": " + xmlFile);
-                                e.printStackTrace();
-                            }
-                        }
-                        
-                        if (!documents.isEmpty()) {
-                            Corpus corpus = new Corpus();
-                            corpus.addDocuments(documents);
-                            
-                            // Submit writing task
-                            fileWritingExecutor.submit(() -> {
-                                try {
-                                    FileBuilder postingFileBuilder = new FileBuilder(currentBatchNo);
-                                    fileBatchCollector.add(postingFileBuilder.createBatchFiles(corpus));
-                                    System.out.println("Batch " + currentBatchNo + " written successfully");
-                                    corpus.clear();
-                                } catch (Exception e) {
-                                    System.err.println("Error writing batch " + currentBatchNo);
-                                    e.printStackTrace();
-                                } finally {
-                                    memorySemaphore.release();
-                                }
-                            });
-                        } else {
-                            memorySemaphore.release();
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Error processing batch " + currentBatchNo);
-                        e.printStackTrace();
-                        memorySemaphore.release();
-                    }
-                }));
-            }
+            IndexStageEvent partialStage = new IndexStageEvent("partial indexing");
+            partialStage.begin();
 
-            // Wait for processing tasks to complete
-            for (Future<?> future : futures) {
-                try {
-                    future.get();
-                } catch (InterruptedException | ExecutionException e) {
-                    e.printStackTrace();
+            if (workerCount > 1) {
+                // Coordinator mode: worker JVMs produce the sorted runs
+                coordinator = new IndexCoordinator(stopwordDirectory, profile, duplicatePolicy, workerHosts);
+                coordinator.run(documentDirectory, workerCount, fileBatchCollector);
+            } else {
+                DocumentFilter filter = doc -> true;
+                if (duplicatePolicy != DuplicateDetector.Policy.OFF) {
+                    DuplicateDetector detector = new DuplicateDetector();
+                    duplicateDetector = detector;
+                    // Collapsed documents join the cluster of an earlier near-duplicate
+                    filter = doc -> detector.register(doc) == doc.getPmcdId()
+                                    || duplicatePolicy != DuplicateDetector.Policy.COLLAPSE;
                 }
+                indexBatches(FileManager.getFileBatchIterator(documentDirectory, BATCH_SIZE),
+                             profile, filter, fileBatchCollector, FileManager.RESULT_DIR);
             }
 
-            // Wait for all file writing tasks to finish
-            fileWritingExecutor.shutdown(); // Prevent new tasks
-
+            partialStage.commit();
             timer.stop();
-
-            
-            try {
-                // Wait indefinitely for existing tasks to complete
-                if (!fileWritingExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
-                    System.err.println("File writing tasks did not complete!");
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
             
             System.out.println("Partial indexing of " + documentDirectory + " is done in " + timer.getElapsedTimeSeconds() + " sec");
 
             timer.start();
             String resultDir = FileManager.RESULT_DIR + File.separator + "CollectionIndex";
             FileManager.ensureDirectoryExists(resultDir);
+            IndexStageEvent mergeStage = new IndexStageEvent("merge");
+            mergeStage.begin();
             FileMerger.merge(
                 fileBatchCollector.getVocabPaths(),
                 fileBatchCollector.getPostingsPaths(), 
                 fileBatchCollector.getDocPaths(), 
                 resultDir
             );
+            mergeStage.commit();
+
+            IndexStageEvent sideFileStage = new IndexStageEvent("side files");
+            sideFileStage.begin();
+            ForwardIndexBuilder.build(resultDir, fileBatchCollector.getForwardPaths());
+            System.out.println("Keyword values: " + KeywordIndexBuilder.build(resultDir, fileBatchCollector.getKeywordPaths()));
+            DocValuesBuilder.build(resultDir, fileBatchCollector.getKeywordPaths());
+            sideFileStage.commit();
+            IndexMetadata metadata = IndexMetadata.forProfile(profile);
+            metadata.set("duplicates", duplicatePolicy.name());
+            metadata.set("workers", Integer.toString(workerCount));
+            metadata.store(new File(resultDir));
+
+            if (duplicateDetector != null) {
+                duplicateDetector.writeClusters(resultDir);
+                System.out.println("Near-duplicates found: " + duplicateDetector.getDuplicateCount());
+            } else if (coordinator != null) {
+                coordinator.writeDuplicateClusters(resultDir);
+            }
             timer.stop();
             System.out.println("Merging of partial files was done in " + timer.getElapsedTimeSeconds() + " sec");
 
             timer.start();
+            IndexStageEvent normStage = new IndexStageEvent("norms");
+            normStage.begin();
             VectorNormCalculator vec = new VectorNormCalculator(resultDir);
             vec.calculateAndUpdateNorms();
+            CollectionStatistics.compute(new File(resultDir)).store(metadata);
+            metadata.store(new File(resultDir));
+            TermBoundsBuilder.build(resultDir);
+            ImpactPostingsBuilder.build(resultDir);
+            // Last: the builders above read the dense lists as text
+            System.out.println("Bitmap posting lists: " + BitmapPostingsBuilder.build(resultDir));
+            normStage.commit();
             timer.stop();
 
             FileManager.deleteDirectory(new File(FileBuilder.POSTING_DIR));
             FileManager.deleteDirectory(new File(FileBuilder.VOC_DIR)); 
             FileManager.deleteDirectory(new File(FileBuilder.DOC_DIR)); 
+            FileManager.deleteDirectory(new File(FileBuilder.FWD_DIR));
+            FileManager.deleteDirectory(new File(FileBuilder.KW_DIR));
+            if (coordinator != null) {
+                coordinator.cleanup();
+            }
 
             System.out.println("Vector Norm caclulation was done in " + timer.getElapsedTimeSeconds() + " sec");
             System.out.println("Processing complete!");
@@ -160,6 +182,255 @@ public class IndexerMain {
         }
     }
 
+    // Decides whether a parsed document goes into the index
+    private interface DocumentFilter {
+        boolean admit(Document document) throws IOException;
+    }
+
+    /**
+     * Worker mode: index a slice of the collection into sorted runs, no merge.
+     * Duplicates are left to the coordinator: under FLAG the worker writes its
+     * documents' signatures while indexing; under COLLAPSE it wrote them in an
+     * earlier signature pass and now skips the documents the coordinator listed.
+     */
+    private static void runWorker(String[] args) {
+        int exitCode = 0;
+        try {
+            IndexCoordinator.WorkerTask task = IndexCoordinator.WorkerTask.fromArgs(args);
+            StopWordManager.loadStopWords(task.getStopwordDirectory());
+
+            if (task.isSignaturePass()) {
+                writeSignatures(task);
+            } else {
+                FileBatchCollector fileBatchCollector = new FileBatchCollector();
+                try (DataOutputStream signatures = task.getDuplicatePolicy() == DuplicateDetector.Policy.FLAG
+                        ? new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(task.getSignatureFile())))
+                        : null) {
+                    DocumentFilter filter;
+                    if (signatures != null) {
+                        DuplicateDetector detector = new DuplicateDetector();
+                        filter = doc -> {
+                            detector.writeSignature(signatures, doc);
+                            return true;
+                        };
+                    } else {
+                        Set<Long> collapsed = task.readCollapsed();
+                        filter = doc -> !collapsed.contains(doc.getPmcdId().longValue());
+                    }
+                    indexBatches(new FileBatchIterator(task.readFiles(), BATCH_SIZE),
+                                 task.getProfile(), filter, fileBatchCollector, task.getWorkDirectory());
+                }
+                task.writeManifest(fileBatchCollector);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            exitCode = 1;
+        } finally {
+            shutdownExecutors();
+        }
+        System.exit(exitCode);
+    }
+
+    // Signature pass of a worker under COLLAPSE: parses its slice and writes the MinHash signatures only
+    private static void writeSignatures(IndexCoordinator.WorkerTask task) throws IOException {
+        DuplicateDetector detector = new DuplicateDetector();
+        long[] stageNanos = new long[2];
+        try (DataOutputStream signatures = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(task.getSignatureFile())))) {
+            for (Path xmlFile : task.readFiles()) {
+                Document doc;
+                try {
+                    doc = DocumentFactory.createDocument(xmlFile.toFile(), task.getProfile(), stageNanos);
+                } catch (Exception e) {
+                    // Unparseable files are skipped by the indexing pass as well
+                    System.err.println("Error processing file: " + xmlFile);
+                    e.printStackTrace();
+                    continue;
+                }
+                detector.writeSignature(signatures, doc);
+            }
+        }
+    }
+
+    /**
+     * Parses and writes every batch, returning once all batch files are on
+     * disk. The executors stay up for the next call; whoever owns them shuts
+     * them down.
+     */
+    private static void indexBatches(FileBatchIterator fileBatchIterator,
+                                     IndexProfile profile,
+                                     DocumentFilter filter,
+                                     FileBatchCollector fileBatchCollector,
+                                     String tempRoot) throws InterruptedException {
+        List<Future<?>> futures = new ArrayList<>();
+        List<Future<?>> writes = Collections.synchronizedList(new ArrayList<>());
+
+        while (fileBatchIterator.hasNext()) {
+            final List<Path> xmlFiles = fileBatchIterator.next();
+            final int currentBatchNo = futures.size();
+            
+            // Wait for memory availability
+            memorySemaphore.acquire();
+            
+            futures.add(processingExecutor.submit(() -> {
+                try {
+                    System.out.println("Processing batch " + currentBatchNo + " (" + xmlFiles.size() + " files)");
+                    BatchProcessEvent processEvent = new BatchProcessEvent();
+                    processEvent.begin();
+                    long[] stageNanos = new long[2];
+                    
+                    // Process documents sequentially (stemmer limitation)
+                    List<Document> documents = new ArrayList<>();
+                    for (Path xmlFile : xmlFiles) {
+                        try {
+                            Document doc = DocumentFactory.createDocument(xmlFile.toFile(), profile, stageNanos);
+
+                            if (filter.admit(doc)) {
+                                documents.add(doc);
+                            }
+                        } catch (Exception e) {
+                            System.err.println("Error processing file in batch " + currentBatchNo + ": " + xmlFile);
+                            e.printStackTrace();
+                        }
+                    }
+                    
+                    if (!documents.isEmpty()) {
+                        long invertStart = System.nanoTime();
+                        Corpus corpus = new Corpus();
+                        corpus.addDocuments(documents);
+
+                        processEvent.batch = currentBatchNo;
+                        processEvent.files = xmlFiles.size();
+                        processEvent.documents = documents.size();
+                        processEvent.parseTime = stageNanos[0];
+                        processEvent.analyzeTime = stageNanos[1];
+                        processEvent.invertTime = System.nanoTime() - invertStart;
+                        processEvent.batchesInMemory = BATCHES_IN_MEMORY - memorySemaphore.availablePermits();
+                        processEvent.commit();
+                        
+                        // Submit writing task
+                        pendingWrites.incrementAndGet();
+                        writes.add(fileWritingExecutor.submit(() -> {
+                            try {
+                                BatchWriteEvent writeEvent = new BatchWriteEvent();
+                                writeEvent.writeQueueDepth = pendingWrites.decrementAndGet();
+                                writeEvent.batch = currentBatchNo;
+                                writeEvent.documents = corpus.size();
+                                writeEvent.terms = corpus.getVocabulary().size();
+                                writeEvent.begin();
+
+                                FileBuilder postingFileBuilder = new FileBuilder(currentBatchNo, profile, tempRoot);
+                                List<String> batchFiles = postingFileBuilder.createBatchFiles(corpus);
+                                fileBatchCollector.add(batchFiles);
+
+                                if (writeEvent.shouldCommit()) {
+                                    writeEvent.bytesWritten = totalSize(batchFiles);
+                                    writeEvent.commit();
+                                }
+                                System.out.println("Batch " + currentBatchNo + " written successfully");
+                                corpus.clear();
+                            } catch (Exception e) {
+                                System.err.println("Error writing batch " + currentBatchNo);
+                                e.printStackTrace();
+                            } finally {
+                                memorySemaphore.release();
+                            }
+                        }));
+                    } else {
+                        memorySemaphore.release();
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error processing batch " + currentBatchNo);
+                    e.printStackTrace();
+                    memorySemaphore.release();
+                }
+            }));
+        }
+
+        // Wait for processing tasks to complete
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException | ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+
+        // Every write was submitted by a finished processing task; wait for all of them
+        for (Future<?> write : writes) {
+            try {
+                write.get();
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static long totalSize(List<String> paths) throws IOException {
+        long size = 0;
+        for (String path : paths) {
+            size += Files.size(Paths.get(path));
+        }
+        return size;
+    }
+
+    private static IndexProfile selectProfile() {
+        IndexProfile[] profiles = IndexProfile.values();
+        int choice = JOptionPane.showOptionDialog(
+            null,
+            "Choose index profile:",
+            "Index Profile",
+            JOptionPane.DEFAULT_OPTION,
+            JOptionPane.QUESTION_MESSAGE,
+            null,
+            profiles,
+            IndexProfile.FULL
+        );
+
+        return choice >= 0 ? profiles[choice] : IndexProfile.FULL;
+    }
+
+    private static DuplicateDetector.Policy selectDuplicatePolicy() {
+        DuplicateDetector.Policy[] policies = DuplicateDetector.Policy.values();
+        int choice = JOptionPane.showOptionDialog(
+            null,
+            "Near-duplicate documents:",
+            "Duplicate Detection",
+            JOptionPane.DEFAULT_OPTION,
+            JOptionPane.QUESTION_MESSAGE,
+            null,
+            policies,
+            DuplicateDetector.Policy.OFF
+        );
+
+        return choice >= 0 ? policies[choice] : DuplicateDetector.Policy.OFF;
+    }
+
+    private static int selectWorkerCount() {
+        String input = JOptionPane.showInputDialog(null,
+            "Number of worker processes (1 = index in this JVM):", "1");
+        try {
+            return input != null ? Math.max(1, Integer.parseInt(input.trim())) : 1;
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid worker count: " + input + ". Defaulting to 1");
+            return 1;
+        }
+    }
+
+    // Hosts for the worker processes, reached over ssh; none starts them on this machine
+    private static List<String> selectWorkerHosts() {
+        String input = JOptionPane.showInputDialog(null,
+            "Worker hosts, comma-separated (empty = this machine):", "");
+        List<String> hosts = new ArrayList<>();
+        if (input != null) {
+            for (String host : input.split(",")) {
+                if (!host.isBlank()) hosts.add(host.trim());
+            }
+        }
+        return hosts;
+    }
+
+    // Only called by main and runWorker, which own the executors for the life of the JVM
     private static void shutdownExecutors() {
         processingExecutor.shutdown();
         fileWritingExecutor.shutdown();
@@ -0,0 +1,47 @@
+package com.search.indexer.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Parsing and analysis of one batch, from the first file to the in-memory
+ * inverted batch. Stage times are summed over the batch's documents.
+ */
+@Name("com.search.indexer.BatchProcess")
+@Label("Batch Process")
+@Category({ "Search", "Indexer" })
+@Description("Parse, analyze and invert one batch of documents")
+public class BatchProcessEvent extends Event {
+    @Label("Batch")
+    public int batch;
+
+    @Label("Files")
+    public int files;
+
+    @Label("Documents")
+    @Description("Documents kept after duplicate collapsing and parse errors")
+    public int documents;
+
+    @Label("Parse Time")
+    @Description("NXML reading")
+    @Timespan(Timespan.NANOSECONDS)
+    public long parseTime;
+
+    @Label("Analyze Time")
+    @Description("Tokenization, stopword removal and stemming")
+    @Timespan(Timespan.NANOSECONDS)
+    public long analyzeTime;
+
+    @Label("Invert Time")
+    @Description("Building the batch vocabulary")
+    @Timespan(Timespan.NANOSECONDS)
+    public long invertTime;
+
+    @Label("Batches In Memory")
+    @Description("Batches holding a memory permit when this one started")
+    public int batchesInMemory;
+}
@@ -0,0 +1,34 @@
+package com.search.indexer.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Writing the sorted run files of one batch.
+ */
+@Name("com.search.indexer.BatchWrite")
+@Label("Batch Write")
+@Category({ "Search", "Indexer" })
+@Description("Write the vocabulary, postings and side files of one batch")
+public class BatchWriteEvent extends Event {
+    @Label("Batch")
+    public int batch;
+
+    @Label("Documents")
+    public int documents;
+
+    @Label("Terms")
+    public int terms;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytesWritten;
+
+    @Label("Write Queue Depth")
+    @Description("Batches waiting for the writer thread when this one started")
+    public int writeQueueDepth;
+}
@@ -0,0 +1,23 @@
+package com.search.indexer.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A whole indexing stage (partial indexing, merge, side files, norms).
+ */
+@Name("com.search.indexer.IndexStage")
+@Label("Index Stage")
+@Category({ "Search", "Indexer" })
+@Description("One stage of an index build")
+public class IndexStageEvent extends Event {
+    @Label("Stage")
+    public String stage;
+
+    public IndexStageEvent(String stage) {
+        this.stage = stage;
+    }
+}
@@ -0,0 +1,30 @@
+package com.search.indexer.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One round of the pairwise run merge.
+ */
+@Name("com.search.indexer.MergeRound")
+@Label("Merge Round")
+@Category({ "Search", "Indexer" })
+@Description("Merge the current runs pairwise")
+public class MergeRoundEvent extends Event {
+    @Label("Round")
+    public int round;
+
+    @Label("Input Runs")
+    public int inputRuns;
+
+    @Label("Output Runs")
+    public int outputRuns;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytesWritten;
+}
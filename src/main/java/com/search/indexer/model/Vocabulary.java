@@ -41,6 +41,11 @@ public class Vocabulary {
         return termToDocIds.getOrDefault(term, new TreeSet<>()).size();
     }
 
+    // Number of distinct terms
+    public int size() {
+        return termToDocIds.size();
+    }
+
     // Get all terms in lexicographic order
     public Set<String> getSortedTerms() {
         return new TreeSet<>(termToDocIds.keySet());
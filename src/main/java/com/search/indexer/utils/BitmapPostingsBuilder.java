@@ -0,0 +1,154 @@
+package com.search.indexer.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.search.common.index.BitmapPostings;
+import com.search.query.reader.VocabularyReader;
+
+/**
+ * Moves the lists of terms that occur in at least DENSITY_THRESHOLD of the
+ * documents from PostingFile.txt into BitmapPostings.bin. Their vocabulary
+ * entries keep df, pointer and bounds and record 0 stored text postings, so
+ * sequential readers skip them; readers that need every list get the dense
+ * ones through readLines().
+ *
+ * Runs last on a finished index, after TermBoundsBuilder and
+ * ImpactPostingsBuilder, which then still see the lists as text. Block
+ * offsets stay valid since they are relative to the term pointer.
+ */
+public class BitmapPostingsBuilder {
+    public static final double DENSITY_THRESHOLD = 0.1;
+
+    /**
+     * @return Number of terms that received a bitmap list
+     */
+    public static int build(String indexDirPath) throws IOException {
+        Path indexDir = Paths.get(indexDirPath);
+        Path vocabFile = indexDir.resolve("VocabularyFile.txt");
+        Path postingsFile = indexDir.resolve("PostingFile.txt");
+        Path target = indexDir.resolve(BitmapPostings.FILE_NAME);
+        Path lists = indexDir.resolve(BitmapPostings.FILE_NAME + ".tmp");
+        Path vocabTemp = indexDir.resolve("VocabularyFile.tmp");
+        Path postingsTemp = indexDir.resolve("PostingFile.tmp");
+
+        long totalDocuments;
+        try (BufferedReader reader = Files.newBufferedReader(indexDir.resolve("DocumentFile.txt"))) {
+            totalDocuments = reader.lines().count();
+        }
+        int minDf = (int) Math.max(1, Math.ceil(totalDocuments * DENSITY_THRESHOLD));
+
+        List<int[]> directory = new ArrayList<>(); // {termId, length, df}
+        // A rebuilt index may already hold dense lists as bitmaps
+        try (BitmapPostings existing = BitmapPostings.open(indexDir.toFile());
+             BufferedReader vocabReader = Files.newBufferedReader(vocabFile);
+             BufferedReader postingReader = Files.newBufferedReader(postingsFile, StandardCharsets.US_ASCII);
+             BufferedWriter vocabWriter = Files.newBufferedWriter(vocabTemp);
+             BufferedWriter postingWriter = Files.newBufferedWriter(postingsTemp, StandardCharsets.US_ASCII);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(lists)))) {
+
+            long pointer = 0;
+            int termId = 0;
+            String vocabLine;
+            while ((vocabLine = vocabReader.readLine()) != null) {
+                String[] parts = vocabLine.split(" ");
+                String[] lines = readLines(postingReader, VocabularyReader.postingsCount(parts), existing, termId);
+
+                long termPointer = pointer;
+                int stored = 0;
+                if (lines.length >= minDf) {
+                    int before = out.size();
+                    toBitmap(lines).write(out);
+                    directory.add(new int[] { termId, out.size() - before, lines.length });
+                } else {
+                    for (String line : lines) {
+                        postingWriter.write(line);
+                        postingWriter.write('\n');
+                        pointer += line.length() + 1;
+                    }
+                    stored = lines.length;
+                }
+
+                // "term df pointer [bm25Bound vsmBound] [stored]"
+                StringBuilder entry = new StringBuilder(parts[0]).append(' ').append(parts[1]).append(' ').append(termPointer);
+                if (parts.length >= 5) {
+                    entry.append(' ').append(parts[3]).append(' ').append(parts[4]);
+                }
+                if (stored != Integer.parseInt(parts[1])) {
+                    entry.append(' ').append(stored);
+                }
+                vocabWriter.write(entry.append('\n').toString());
+                termId++;
+            }
+        }
+
+        long offset = Integer.BYTES + (long) directory.size() * BitmapPostings.DIRECTORY_ENTRY_BYTES;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target)))) {
+            out.writeInt(directory.size());
+            for (int[] entry : directory) {
+                out.writeInt(entry[0]);
+                out.writeLong(offset);
+                out.writeInt(entry[1]);
+                out.writeInt(entry[2]);
+                offset += entry[1];
+            }
+            Files.copy(lists, out);
+        } finally {
+            Files.deleteIfExists(lists);
+        }
+        Files.move(postingsTemp, postingsFile, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(vocabTemp, vocabFile, StandardCopyOption.REPLACE_EXISTING);
+        return directory.size();
+    }
+
+    /**
+     * The posting lines of a term in vocabulary order: the next stored lines
+     * of the text postings, or "docId tf" lines rebuilt from the term's
+     * bitmap list when none are stored as text.
+     * @param bitmapPostings null for indexes without bitmap lists
+     */
+    static String[] readLines(BufferedReader postingReader, int stored, BitmapPostings bitmapPostings, int termId) throws IOException {
+        BitmapPostings.TermPostings bitmap = stored == 0 && bitmapPostings != null ? bitmapPostings.get(termId) : null;
+        if (bitmap != null) {
+            List<String> lines = new ArrayList<>(bitmap.getDf());
+            bitmap.forEach((docId, tf) -> lines.add(docId + " " + tf));
+            return lines.toArray(new String[0]);
+        }
+
+        String[] lines = new String[stored];
+        for (int i = 0; i < stored; i++) {
+            lines[i] = postingReader.readLine();
+        }
+        return lines;
+    }
+
+    private static BitmapPostings.TermPostings toBitmap(String[] lines) throws IOException {
+        // Pack (docId, tf) so that sorting orders by docId
+        long[] entries = new long[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            int firstSpace = line.indexOf(' ');
+            int secondSpace = line.indexOf(' ', firstSpace + 1);
+            if (secondSpace < 0) secondSpace = line.length();
+
+            long docId = Long.parseLong(line.substring(0, firstSpace));
+            if (docId > Integer.MAX_VALUE) {
+                throw new IOException("Doc id out of bitmap range: " + docId);
+            }
+            entries[i] = (docId << 32) | Integer.parseInt(line.substring(firstSpace + 1, secondSpace));
+        }
+        Arrays.sort(entries);
+
+        int[] docIds = new int[lines.length];
+        int[] tfs = new int[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            docIds[i] = (int) (entries[i] >>> 32);
+            tfs[i] = (int) entries[i];
+        }
+        return new BitmapPostings.TermPostings(BitmapPostings.DocBitmap.of(docIds), tfs);
+    }
+}
@@ -0,0 +1,365 @@
+package com.search.indexer.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.search.common.index.BitmapPostings;
+import com.search.common.index.DocValues;
+import com.search.common.index.ForwardIndex;
+import com.search.common.index.IndexMetadata;
+import com.search.common.index.KeywordIndex;
+import com.search.query.reader.VocabularyReader;
+
+/**
+ * Reassigns document ids by recursive graph bisection over the term-document
+ * graph, so that documents sharing terms receive nearby ids, and rewrites the
+ * index with the new ids. The original id is kept as the last DocumentFile column.
+ */
+public class DocIdReorderer {
+    private static final int ITERATIONS = 20;
+    private static final int MIN_PARTITION_SIZE = 16;
+    private static final int MAX_DEPTH = 40;
+
+    private final Path sourceDir;
+    private final Path targetDir;
+
+    private List<String[]> documentLines;   // DocumentFile columns, by document ordinal
+    private Map<Long, Integer> ordinals;     // old docId -> document ordinal
+    private int[][] documentTerms;           // forward graph: ordinal -> term ids
+    private int termCount;
+    private double[] log2Table;              // log2(i) for 0 < i <= documents + 1
+
+    // Locality of the lists of terms with df >= 2, in the source order and the computed one
+    private double gapBitsBefore;
+    private double gapBitsAfter;
+    private long gapBytesBefore;
+    private long gapBytesAfter;
+
+    public DocIdReorderer(String sourceDirPath, String targetDirPath) {
+        this.sourceDir = Paths.get(sourceDirPath);
+        this.targetDir = Paths.get(targetDirPath);
+    }
+
+    public void reorder() throws IOException {
+        Files.createDirectories(targetDir);
+
+        loadDocuments();
+        buildForwardGraph();
+
+        int[] order = new int[documentLines.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+
+        log2Table = new double[order.length + 2];
+        for (int i = 1; i < log2Table.length; i++) log2Table[i] = Math.log(i) / Math.log(2);
+
+        double[] before = gapCost(order);
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            pool.invoke(new BisectionTask(order, 0, order.length, 0));
+        } finally {
+            pool.shutdown();
+        }
+        double[] after = gapCost(order);
+        documentTerms = null;
+
+        double gaps = Math.max(1, before[2]);
+        gapBitsBefore = before[0] / gaps;
+        gapBitsAfter = after[0] / gaps;
+        gapBytesBefore = (long) before[1];
+        gapBytesAfter = (long) after[1];
+
+        // newIds[ordinal] = position of the document in the computed order
+        long[] newIds = new long[order.length];
+        for (int position = 0; position < order.length; position++) {
+            newIds[order[position]] = position;
+        }
+
+        writeDocumentFile(order);
+        writeVocabularyAndPostings(newIds);
+
+        // Vocabulary order is unchanged, so term vectors only need the new doc ids
+        ForwardIndex.rewrite(sourceDir.toFile(), targetDir.toFile(),
+                             docId -> newIds[ordinals.get(docId)], termId -> termId);
+        KeywordIndex.rewrite(sourceDir.toFile(), targetDir.toFile(), docId -> newIds[ordinals.get(docId)]);
+
+        // Facet columns follow the new document order
+        long[] oldDocIds = new long[order.length];
+        for (int position = 0; position < order.length; position++) {
+            oldDocIds[position] = Long.parseLong(documentLines.get(order[position])[0]);
+        }
+        DocValues.rewrite(sourceDir.toFile(), targetDir.toFile(), oldDocIds, docId -> newIds[ordinals.get(docId)]);
+
+        // Duplicate clusters use external ids and carry over unchanged
+        Path duplicates = sourceDir.resolve(DuplicateDetector.FILE_NAME);
+        if (Files.exists(duplicates)) {
+            Files.copy(duplicates, targetDir.resolve(DuplicateDetector.FILE_NAME), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        IndexMetadata metadata = IndexMetadata.load(sourceDir.toFile());
+        metadata.set("docids", "reordered");
+        metadata.store(targetDir.toFile());
+
+        // Term bounds depend only on the postings, but the vocabulary was rewritten without them
+        TermBoundsBuilder.build(targetDir.toString());
+        ImpactPostingsBuilder.build(targetDir.toString());
+        BitmapPostingsBuilder.build(targetDir.toString());
+    }
+
+    private void loadDocuments() throws IOException {
+        documentLines = new ArrayList<>();
+        ordinals = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(sourceDir.resolve("DocumentFile.txt"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                ordinals.put(Long.parseLong(parts[0]), documentLines.size());
+                documentLines.add(parts);
+            }
+        }
+    }
+
+    // Inverts the postings into per-document term lists (terms with df < 2 never affect gaps)
+    private void buildForwardGraph() throws IOException {
+        int[] termCounts = new int[documentLines.size()];
+        List<int[]> termDocs = new ArrayList<>();
+
+        try (BitmapPostings bitmapPostings = BitmapPostings.open(sourceDir.toFile());
+             BufferedReader vocabReader = Files.newBufferedReader(sourceDir.resolve("VocabularyFile.txt"));
+             BufferedReader postingReader = Files.newBufferedReader(sourceDir.resolve("PostingFile.txt"), StandardCharsets.US_ASCII)) {
+            int termId = 0;
+            String vocabLine;
+            while ((vocabLine = vocabReader.readLine()) != null) {
+                String[] lines = BitmapPostingsBuilder.readLines(postingReader, VocabularyReader.postingsCount(vocabLine.split(" ")),
+                                                                 bitmapPostings, termId++);
+                int[] docs = new int[lines.length];
+                for (int i = 0; i < lines.length; i++) {
+                    docs[i] = ordinals.get(parseDocId(lines[i]));
+                }
+                if (docs.length < 2) continue;
+
+                termDocs.add(docs);
+                for (int doc : docs) termCounts[doc]++;
+            }
+        }
+
+        termCount = termDocs.size();
+        documentTerms = new int[documentLines.size()][];
+        for (int doc = 0; doc < documentTerms.length; doc++) {
+            documentTerms[doc] = new int[termCounts[doc]];
+            termCounts[doc] = 0;
+        }
+        for (int term = 0; term < termCount; term++) {
+            for (int doc : termDocs.get(term)) {
+                documentTerms[doc][termCounts[doc]++] = term;
+            }
+        }
+    }
+
+    /**
+     * Cost of the lists as docId gaps when documents are numbered by their
+     * position in order: what delta + varint coding of the postings would
+     * store. The first gap of a list is its first id + 1.
+     * @return {sum of log2 gaps, varint bytes of the gaps, number of gaps}
+     */
+    private double[] gapCost(int[] order) {
+        int[] previous = new int[termCount];
+        Arrays.fill(previous, -1);
+        double bits = 0.0;
+        double bytes = 0.0;
+        double gaps = 0.0;
+        for (int position = 0; position < order.length; position++) {
+            for (int term : documentTerms[order[position]]) {
+                int gap = position - previous[term];
+                previous[term] = position;
+                bits += log2Table[gap];
+                bytes += (32 - Integer.numberOfLeadingZeros(gap) + 6) / 7;
+                gaps++;
+            }
+        }
+        return new double[] { bits, bytes, gaps };
+    }
+
+    private class BisectionTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] order;
+        private final int from;
+        private final int to;
+        private final int depth;
+
+        BisectionTask(int[] order, int from, int to, int depth) {
+            this.order = order;
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= MIN_PARTITION_SIZE || depth >= MAX_DEPTH) {
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            bisect(order, from, middle, to);
+
+            invokeAll(new BisectionTask(order, from, middle, depth + 1),
+                      new BisectionTask(order, middle, to, depth + 1));
+        }
+    }
+
+    // Per-thread degree tables, sized to the vocabulary and cleared after each pass
+    private final ThreadLocal<int[][]> degreeTables = ThreadLocal.withInitial(() -> new int[][] {
+        new int[termCount], new int[termCount]
+    });
+
+    private void bisect(int[] order, int from, int middle, int to) {
+        int leftSize = middle - from;
+        int rightSize = to - middle;
+        long[] leftGains = new long[leftSize];
+        long[] rightGains = new long[rightSize];
+        int[][] degrees = degreeTables.get();
+
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            countDegrees(order, from, middle, degrees[0]);
+            countDegrees(order, middle, to, degrees[1]);
+
+            for (int i = 0; i < leftSize; i++) {
+                leftGains[i] = sortKey(moveGain(order[from + i], degrees[0], degrees[1], leftSize, rightSize), i);
+            }
+            for (int i = 0; i < rightSize; i++) {
+                rightGains[i] = sortKey(moveGain(order[middle + i], degrees[1], degrees[0], rightSize, leftSize), i);
+            }
+
+            clearDegrees(order, from, middle, degrees[0]);
+            clearDegrees(order, middle, to, degrees[1]);
+
+            Arrays.sort(leftGains);
+            Arrays.sort(rightGains);
+
+            // Swap the most eager pairs while the exchange still lowers the cost
+            int swaps = 0;
+            for (int i = 0; i < Math.min(leftSize, rightSize); i++) {
+                long leftKey = leftGains[leftSize - 1 - i];
+                long rightKey = rightGains[rightSize - 1 - i];
+                if (gainOf(leftKey) + gainOf(rightKey) <= 0) break;
+
+                int leftIndex = from + (int) leftKey;
+                int rightIndex = middle + (int) rightKey;
+                int tmp = order[leftIndex];
+                order[leftIndex] = order[rightIndex];
+                order[rightIndex] = tmp;
+                swaps++;
+            }
+
+            if (swaps == 0) break;
+        }
+    }
+
+    private void countDegrees(int[] order, int from, int to, int[] degrees) {
+        for (int i = from; i < to; i++) {
+            for (int term : documentTerms[order[i]]) degrees[term]++;
+        }
+    }
+
+    private void clearDegrees(int[] order, int from, int to, int[] degrees) {
+        for (int i = from; i < to; i++) {
+            for (int term : documentTerms[order[i]]) degrees[term] = 0;
+        }
+    }
+
+    // Reduction of the log-gap cost estimate if the document moves to the other side
+    private float moveGain(int doc, int[] ownDegrees, int[] otherDegrees, int ownSize, int otherSize) {
+        double gain = 0.0;
+        for (int term : documentTerms[doc]) {
+            int own = ownDegrees[term];
+            int other = otherDegrees[term];
+            double before = cost(own, ownSize) + cost(other, otherSize);
+            double after = cost(own - 1, ownSize) + cost(other + 1, otherSize);
+            gain += before - after;
+        }
+        return (float) gain;
+    }
+
+    private double cost(int degree, int size) {
+        return degree * (log2Table[size] - log2Table[degree + 1]);
+    }
+
+    // Packs a float gain and an index into a long that sorts by gain
+    private static long sortKey(float gain, int index) {
+        int bits = Float.floatToIntBits(gain);
+        bits ^= (bits >> 31) & 0x7fffffff;
+        return ((long) bits << 32) | (index & 0xffffffffL);
+    }
+
+    private static float gainOf(long key) {
+        int bits = (int) (key >> 32);
+        bits ^= (bits >> 31) & 0x7fffffff;
+        return Float.intBitsToFloat(bits);
+    }
+
+    private void writeDocumentFile(int[] order) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(targetDir.resolve("DocumentFile.txt"))) {
+            for (int position = 0; position < order.length; position++) {
+                String[] parts = documentLines.get(order[position]);
+                // Keep the external (PMCID) id from a previous reordering, if any
+                String externalId = parts.length > 5 ? parts[5] : parts[0];
+
+                writer.write(position + " " + parts[1] + " " + parts[2] + " " + parts[3] + " " + parts[4] + " " + externalId + "\n");
+            }
+        }
+    }
+
+    private void writeVocabularyAndPostings(long[] newIds) throws IOException {
+        try (BitmapPostings bitmapPostings = BitmapPostings.open(sourceDir.toFile());
+             BufferedReader vocabReader = Files.newBufferedReader(sourceDir.resolve("VocabularyFile.txt"));
+             BufferedReader postingReader = Files.newBufferedReader(sourceDir.resolve("PostingFile.txt"), StandardCharsets.US_ASCII);
+             BufferedWriter vocabWriter = Files.newBufferedWriter(targetDir.resolve("VocabularyFile.txt"));
+             BufferedWriter postingWriter = Files.newBufferedWriter(targetDir.resolve("PostingFile.txt"), StandardCharsets.US_ASCII)) {
+
+            long pointer = 0;
+            int termId = 0;
+            String vocabLine;
+            while ((vocabLine = vocabReader.readLine()) != null) {
+                String[] parts = vocabLine.split(" ");
+                String[] lines = BitmapPostingsBuilder.readLines(postingReader, VocabularyReader.postingsCount(parts),
+                                                                 bitmapPostings, termId++);
+                int count = lines.length;
+
+                // Rewrite "docId rest" as "newId rest" and restore docId order
+                String[] postings = new String[count];
+                long[] keys = new long[count];
+                for (int i = 0; i < count; i++) {
+                    String line = lines[i];
+                    int space = line.indexOf(' ');
+                    long newId = newIds[ordinals.get(Long.parseLong(line.substring(0, space)))];
+                    postings[i] = newId + line.substring(space);
+                    keys[i] = (newId << 32) | i;
+                }
+                Arrays.sort(keys);
+
+                String stored = count == Integer.parseInt(parts[1]) ? "" : " " + count;
+                vocabWriter.write(parts[0] + " " + parts[1] + " " + pointer + stored + "\n");
+                for (long key : keys) {
+                    String posting = postings[(int) key];
+                    postingWriter.write(posting);
+                    postingWriter.write('\n');
+                    pointer += posting.length() + 1;
+                }
+            }
+        }
+    }
+
+    private static long parseDocId(String postingLine) {
+        return Long.parseLong(postingLine.substring(0, postingLine.indexOf(' ')));
+    }
+
+    public double getGapBitsBefore() { return gapBitsBefore; }
+    public double getGapBitsAfter() { return gapBitsAfter; }
+    public long getGapBytesBefore() { return gapBytesBefore; }
+    public long getGapBytesAfter() { return gapBytesAfter; }
+}
@@ -0,0 +1,51 @@
+package com.search.indexer.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.search.common.document.FieldType;
+import com.search.common.index.DocValues;
+
+/**
+ * Builds the facet columns (JOURNAL, PUBLISHER, CATEGORY) of the merged index
+ * from the per-batch keyword files, in DocumentFile order.
+ */
+public class DocValuesBuilder {
+
+    public static void build(String resultDir, List<String> keywordPaths) throws IOException {
+        List<Long> docIds = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(resultDir, "DocumentFile.txt"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                docIds.add(Long.parseLong(line.substring(0, line.indexOf(' '))));
+            }
+        }
+
+        Map<FieldType, Map<Long, List<String>>> values = new EnumMap<>(FieldType.class);
+        for (String keywordPath : keywordPaths) {
+            try (BufferedReader reader = Files.newBufferedReader(Paths.get(keywordPath), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split("\t");
+                    FieldType field = FieldType.valueOf(parts[0]);
+                    if (!DocValues.FIELDS.contains(field)) continue;
+
+                    values.computeIfAbsent(field, k -> new HashMap<>())
+                          .computeIfAbsent(Long.parseLong(parts[2]), k -> new ArrayList<>())
+                          .add(parts[1]);
+                }
+            }
+        }
+
+        DocValues.write(new File(resultDir), docIds.stream().mapToLong(Long::longValue).toArray(), values);
+    }
+}
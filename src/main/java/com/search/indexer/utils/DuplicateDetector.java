@@ -0,0 +1,205 @@
+package com.search.indexer.utils;
+
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.*;
+
+import com.search.common.document.Document;
+
+/**
+ * Incremental MinHash / LSH near-duplicate detection over each document's term set.
+ * Every document either joins the cluster of a similar, earlier document or
+ * starts a new cluster of its own. Documents without terms are never
+ * clustered: an empty term set says nothing about similarity.
+ *
+ * Signatures only depend on a document's terms, so they can be computed
+ * where the document is parsed and registered elsewhere, as long as
+ * documents are registered in collection order (see IndexCoordinator).
+ */
+public class DuplicateDetector {
+    public static final String FILE_NAME = "DuplicateFile.txt";
+    public static final int HASHES = 64;
+
+    public enum Policy {
+        // No detection
+        OFF,
+        // Index every document, record clusters so retrieval can skip duplicates
+        FLAG,
+        // Leave duplicates out of the index, record the clusters they belong to
+        COLLAPSE
+    }
+
+    private static final int BANDS = 8;
+    private static final int ROWS = HASHES / BANDS;
+    private static final double SIMILARITY_THRESHOLD = 0.8;
+
+    private final long[] seeds = new long[HASHES];
+    private final List<Map<Long, Integer>> bandBuckets = new ArrayList<>(BANDS); // band key -> cluster index
+    private final List<int[]> clusterSignatures = new ArrayList<>();             // by cluster index
+    private final List<Long> clusterIds = new ArrayList<>();                      // by cluster index
+    private final Map<Long, List<Long>> clusterMembers = new TreeMap<>();         // clusterId -> duplicates
+
+    public DuplicateDetector() {
+        Random random = new Random(0x463L);
+        for (int i = 0; i < HASHES; i++) {
+            seeds[i] = random.nextLong();
+        }
+        for (int band = 0; band < BANDS; band++) {
+            bandBuckets.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * Registers a document and returns the id of its cluster: the id of the
+     * earlier near-duplicate it matched, or its own id if it is new.
+     */
+    public long register(Document document) {
+        return register(document.getPmcdId(), signature(document));
+    }
+
+    /**
+     * Registers a document by a signature from signature(Document).
+     * @param signature null for a document without terms, which is its own cluster
+     */
+    public synchronized long register(long docId, int[] signature) {
+        // Documents without terms (empty or only stopwords) would all share the all-max
+        // signature without being alike, so they neither match nor get matched
+        if (signature == null) {
+            return docId;
+        }
+
+        // Candidates share at least one band; verify with the signature agreement
+        int bestCluster = -1;
+        double bestSimilarity = SIMILARITY_THRESHOLD;
+        long[] bandKeys = new long[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            bandKeys[band] = bandKey(signature, band);
+            Integer candidate = bandBuckets.get(band).get(bandKeys[band]);
+            if (candidate == null || candidate == bestCluster) continue;
+
+            double similarity = similarity(signature, clusterSignatures.get(candidate));
+            if (similarity >= bestSimilarity) {
+                bestSimilarity = similarity;
+                bestCluster = candidate;
+            }
+        }
+
+        if (bestCluster >= 0) {
+            long clusterId = clusterIds.get(bestCluster);
+            clusterMembers.computeIfAbsent(clusterId, k -> new ArrayList<>()).add(docId);
+            return clusterId;
+        }
+
+        int cluster = clusterIds.size();
+        clusterIds.add(docId);
+        clusterSignatures.add(signature);
+        for (int band = 0; band < BANDS; band++) {
+            bandBuckets.get(band).putIfAbsent(bandKeys[band], cluster);
+        }
+        return docId;
+    }
+
+    public synchronized int getDuplicateCount() {
+        return clusterMembers.values().stream().mapToInt(List::size).sum();
+    }
+
+    // Writes "docId clusterId" for every member of a cluster with more than one document
+    public synchronized void writeClusters(String resultDir) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(resultDir + File.separator + FILE_NAME))) {
+            for (Map.Entry<Long, List<Long>> entry : clusterMembers.entrySet()) {
+                long clusterId = entry.getKey();
+                writer.write(clusterId + " " + clusterId + "\n");
+                for (long member : entry.getValue()) {
+                    writer.write(member + " " + clusterId + "\n");
+                }
+            }
+        }
+    }
+
+    // Appends a document's signature to a stream read back by readSignatures; documents without terms are skipped
+    public void writeSignature(DataOutputStream out, Document document) throws IOException {
+        int[] signature = signature(document);
+        if (signature == null) return;
+
+        out.writeLong(document.getPmcdId());
+        for (int value : signature) {
+            out.writeInt(value);
+        }
+    }
+
+    // Registers every signature of a stream written by writeSignature, in order; returns the docIds that were duplicates
+    public List<Long> registerSignatures(DataInputStream in) throws IOException {
+        List<Long> duplicates = new ArrayList<>();
+        int[] signature = new int[HASHES];
+        while (true) {
+            long docId;
+            try {
+                docId = in.readLong();
+            } catch (EOFException e) {
+                return duplicates;
+            }
+            for (int i = 0; i < HASHES; i++) {
+                signature[i] = in.readInt();
+            }
+            if (register(docId, signature.clone()) != docId) {
+                duplicates.add(docId);
+            }
+        }
+    }
+
+    // MinHash signature of the document's terms, null if it has none
+    private int[] signature(Document document) {
+        Set<String> terms = document.getTf().keySet();
+        if (terms.isEmpty()) return null;
+
+        int[] signature = new int[HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+
+        for (String term : terms) {
+            long termHash = hash(term);
+            for (int i = 0; i < HASHES; i++) {
+                int value = (int) (mix(termHash ^ seeds[i]) >>> 33);
+                if (value < signature[i]) signature[i] = value;
+            }
+        }
+        return signature;
+    }
+
+    private static long bandKey(int[] signature, int band) {
+        long key = band;
+        for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+            key = mix(key * 31 + signature[row]);
+        }
+        return key;
+    }
+
+    private static double similarity(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (a[i] == b[i]) equal++;
+        }
+        return equal / (double) HASHES;
+    }
+
+    // 64-bit FNV-1a over the term characters
+    private static long hash(String term) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < term.length(); i++) {
+            hash ^= term.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
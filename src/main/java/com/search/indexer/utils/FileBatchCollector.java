@@ -7,6 +7,8 @@ public class FileBatchCollector {
     private final List<String> docPaths = new ArrayList<>();
     private final List<String> vocabPaths = new ArrayList<>();
     private final List<String> postingsPaths = new ArrayList<>();
+    private final List<String> forwardPaths = new ArrayList<>();
+    private final List<String> keywordPaths = new ArrayList<>();
     
     private final Object lock = new Object();
 
@@ -23,11 +25,21 @@ public class FileBatchCollector {
         }
     }
 
+    /**
+     * Adds the files of one batch, in FileBuilder order:
+     * vocabulary, postings, documents, term vectors, keywords
+     */
     public void add(List<String> lStrings) {
         synchronized (lock) {
             vocabPaths.add(lStrings.get(0));
             postingsPaths.add(lStrings.get(1));
             docPaths.add(lStrings.get(2));
+            if (lStrings.size() > 3) {
+                forwardPaths.add(lStrings.get(3));
+            }
+            if (lStrings.size() > 4) {
+                keywordPaths.add(lStrings.get(4));
+            }
         }
     }
 
@@ -51,4 +63,18 @@ public class FileBatchCollector {
     public List<String> getDocPaths() {
         return docPaths;
     }
+
+    /**
+     * @return Collected term vector file paths, in batch order
+     */
+    public List<String> getForwardPaths() {
+        return forwardPaths;
+    }
+
+    /**
+     * @return Collected keyword file paths, in batch order
+     */
+    public List<String> getKeywordPaths() {
+        return keywordPaths;
+    }
 }
\ No newline at end of file
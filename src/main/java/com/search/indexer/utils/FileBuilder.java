@@ -7,6 +7,7 @@ import java.util.*;
 import com.search.common.document.Document;
 import com.search.common.document.Field;
 import com.search.common.document.FieldType;
+import com.search.common.index.IndexProfile;
 import com.search.common.utils.FileManager;
 import com.search.indexer.model.Corpus;
 import com.search.indexer.model.Vocabulary;
@@ -15,33 +16,64 @@ public class FileBuilder {
     private static final String POSTING_FILE_NAME = "PostingFile_Batch_";
     private static final String VOCABULARY_FILE_NAME = "VocabularyFile_Batch_";
     private static final String DOCUMENT_FILE_NAME = "DocumentFile_Batch_";
+    private static final String FORWARD_FILE_NAME = "ForwardFile_Batch_";
+    private static final String KEYWORD_FILE_NAME = "KeywordFile_Batch_";
 
     public static final String POSTING_DIR = FileManager.RESULT_DIR + File.separator + "tempPost" + File.separator;
     public static final String VOC_DIR = FileManager.RESULT_DIR + File.separator + "tempVoc" + File.separator;
     public static final String DOC_DIR = FileManager.RESULT_DIR + File.separator + "tempDoc" + File.separator;
+    public static final String FWD_DIR = FileManager.RESULT_DIR + File.separator + "tempFwd" + File.separator;
+    public static final String KW_DIR = FileManager.RESULT_DIR + File.separator + "tempKw" + File.separator;
     
     private final int batchNumber;
+    private final IndexProfile profile;
+    private final String postingDir;
+    private final String vocDir;
+    private final String docDir;
+    private final String fwdDir;
+    private final String kwDir;
 
     public FileBuilder(int batchNumber) {
+        this(batchNumber, IndexProfile.FULL);
+    }
+
+    public FileBuilder(int batchNumber, IndexProfile profile) {
+        this(batchNumber, profile, FileManager.RESULT_DIR);
+    }
+
+    // Batch files go under tempRoot, so worker processes can each use their own directory
+    public FileBuilder(int batchNumber, IndexProfile profile, String tempRoot) {
         this.batchNumber = batchNumber;
+        this.profile = profile;
+        this.postingDir = tempRoot + File.separator + "tempPost" + File.separator;
+        this.vocDir = tempRoot + File.separator + "tempVoc" + File.separator;
+        this.docDir = tempRoot + File.separator + "tempDoc" + File.separator;
+        this.fwdDir = tempRoot + File.separator + "tempFwd" + File.separator;
+        this.kwDir = tempRoot + File.separator + "tempKw" + File.separator;
     }
 
     public List<String> createBatchFiles(Corpus corpus) throws IOException {
         // Ensure all directories exist
-        FileManager.ensureDirectoryExists(POSTING_DIR);
-        FileManager.ensureDirectoryExists(VOC_DIR);
-        FileManager.ensureDirectoryExists(DOC_DIR);
+        FileManager.ensureDirectoryExists(postingDir);
+        FileManager.ensureDirectoryExists(vocDir);
+        FileManager.ensureDirectoryExists(docDir);
+        FileManager.ensureDirectoryExists(fwdDir);
+        FileManager.ensureDirectoryExists(kwDir);
 
         // Create file paths
-        String postingFilePath = POSTING_DIR + POSTING_FILE_NAME + batchNumber + ".txt";
-        String vocabularyFilePath = VOC_DIR + VOCABULARY_FILE_NAME + batchNumber + ".txt";
-        String documentFilePath = DOC_DIR + DOCUMENT_FILE_NAME + batchNumber + ".txt";
+        String postingFilePath = postingDir + POSTING_FILE_NAME + batchNumber + ".txt";
+        String vocabularyFilePath = vocDir + VOCABULARY_FILE_NAME + batchNumber + ".txt";
+        String documentFilePath = docDir + DOCUMENT_FILE_NAME + batchNumber + ".txt";
+        String forwardFilePath = fwdDir + FORWARD_FILE_NAME + batchNumber + ".txt";
+        String keywordFilePath = kwDir + KEYWORD_FILE_NAME + batchNumber + ".txt";
 
         try (
             // Open all files for writing
             RandomAccessFile postingFile = new RandomAccessFile(postingFilePath, "rw");
             BufferedWriter vocabWriter = new BufferedWriter(new FileWriter(vocabularyFilePath, StandardCharsets.UTF_8));
-            BufferedWriter docWriter = new BufferedWriter(new FileWriter(documentFilePath, StandardCharsets.UTF_8))
+            BufferedWriter docWriter = new BufferedWriter(new FileWriter(documentFilePath, StandardCharsets.UTF_8));
+            BufferedWriter forwardWriter = new BufferedWriter(new FileWriter(forwardFilePath, StandardCharsets.UTF_8));
+            BufferedWriter keywordWriter = new BufferedWriter(new FileWriter(keywordFilePath, StandardCharsets.UTF_8))
         ) {
             Vocabulary vocabulary = corpus.getVocabulary(); 
             long pointer = 0;
@@ -52,6 +84,20 @@ public class FileBuilder {
                                 document.getDocPath() + " " +
                                 document.getMaxFrequency() + " " +
                                 document.getDocumentLength() +"\n");
+
+                // Term vector in the same document order ("docId term:tf term:tf ...")
+                forwardWriter.write(Integer.toString(document.getPmcdId()));
+                for (Map.Entry<String, Integer> entry : document.getTf().entrySet()) {
+                    forwardWriter.write(" " + entry.getKey() + ":" + entry.getValue());
+                }
+                forwardWriter.write("\n");
+
+                // Keywords as "FIELD<TAB>value<TAB>docId"
+                for (Map.Entry<FieldType, List<String>> entry : document.getKeywords().entrySet()) {
+                    for (String value : entry.getValue()) {
+                        keywordWriter.write(entry.getKey() + "\t" + value + "\t" + document.getPmcdId() + "\n");
+                    }
+                }
             }
 
             // Then process vocabulary and postings
@@ -64,6 +110,11 @@ public class FileBuilder {
                     Document document = corpus.getDocument(docId);
                     int tf = document.getTf().get(term);
 
+                    if (!profile.keepsPositions()) {
+                        postingFile.writeBytes(docId + " " + tf + "\n");
+                        continue;
+                    }
+
                     // Build positional information
                     StringBuilder positions = new StringBuilder("[");
                     for (FieldType fieldType : FieldType.values()) {
@@ -93,9 +144,11 @@ public class FileBuilder {
         System.out.println("- Posting file: " + postingFilePath);
         System.out.println("- Vocabulary file: " + vocabularyFilePath);
         System.out.println("- Document file: " + documentFilePath);
+        System.out.println("- Term vector file: " + forwardFilePath);
+        System.out.println("- Keyword file: " + keywordFilePath);
         
         corpus.clear();
 
-        return Arrays.asList(vocabularyFilePath, postingFilePath, documentFilePath);
+        return Arrays.asList(vocabularyFilePath, postingFilePath, documentFilePath, forwardFilePath, keywordFilePath);
     }
 }
\ No newline at end of file
@@ -3,12 +3,14 @@ package com.search.indexer.utils;
 import java.io.*;
 import java.nio.*;
 import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.search.common.utils.FileManager;
+import com.search.indexer.events.MergeRoundEvent;
 
 public class FileMerger {
 
@@ -35,6 +37,8 @@ public class FileMerger {
         
         try {
             while (vocabQueue.size() > 1) {
+                MergeRoundEvent roundEvent = new MergeRoundEvent();
+                roundEvent.begin();
                 int currentSize = vocabQueue.size();
                 int numPairs = currentSize / 2;
                 int leftover = currentSize % 2;
@@ -63,11 +67,21 @@ public class FileMerger {
                 }
                 
                 // Collect results
+                long bytesWritten = 0;
                 for (Future<MergeResult> future : futures) {
                     MergeResult result = future.get();
                     vocabQueue.add(result.mergedVocabPath);
                     postQueue.add(result.mergedPostPath);
+                    if (roundEvent.shouldCommit()) {
+                        bytesWritten += Files.size(Paths.get(result.mergedVocabPath)) + Files.size(Paths.get(result.mergedPostPath));
+                    }
                 }
+
+                roundEvent.round = mergeCount.get();
+                roundEvent.inputRuns = currentSize;
+                roundEvent.outputRuns = vocabQueue.size();
+                roundEvent.bytesWritten = bytesWritten;
+                roundEvent.commit();
                 mergeCount.incrementAndGet();
             }
             
@@ -131,26 +145,19 @@ public class FileMerger {
                 } else {
                     long newPointer = mergedPointer;
 
-                    // Read first document ID to determine merge order
-                    long docId1 = readFirstDocId(postChannel1, entry1.pointer);
-                    long docId2 = readFirstDocId(postChannel2, entry2.pointer);
+                    // Runs whose docId ranges do not overlap are copied in order, others interleaved
+                    long end1 = endPointer(postChannel1, getNextPointer(reader1, entry1));
+                    long end2 = endPointer(postChannel2, getNextPointer(reader2, entry2));
 
-                    if (docId1 <= docId2) {
-                        mergedPointer = copyPostingData(postChannel1, entry1.pointer, 
-                                                       getNextPointer(reader1, entry1), 
-                                                       mergedPostChannel, mergedPointer);
-                        
-                        mergedPointer = copyPostingData(postChannel2, entry2.pointer, 
-                                                       getNextPointer(reader2, entry2), 
-                                                       mergedPostChannel, mergedPointer);
+                    if (readLastDocId(postChannel1, entry1.pointer, end1) < readFirstDocId(postChannel2, entry2.pointer)) {
+                        mergedPointer = copyBytes(postChannel1, entry1.pointer, end1 - entry1.pointer, mergedPostChannel, mergedPointer);
+                        mergedPointer = copyBytes(postChannel2, entry2.pointer, end2 - entry2.pointer, mergedPostChannel, mergedPointer);
+                    } else if (readLastDocId(postChannel2, entry2.pointer, end2) < readFirstDocId(postChannel1, entry1.pointer)) {
+                        mergedPointer = copyBytes(postChannel2, entry2.pointer, end2 - entry2.pointer, mergedPostChannel, mergedPointer);
+                        mergedPointer = copyBytes(postChannel1, entry1.pointer, end1 - entry1.pointer, mergedPostChannel, mergedPointer);
                     } else {
-                        mergedPointer = copyPostingData(postChannel2, entry2.pointer, 
-                                                       getNextPointer(reader2, entry2), 
-                                                       mergedPostChannel, mergedPointer);
-                        
-                        mergedPointer = copyPostingData(postChannel1, entry1.pointer, 
-                                                       getNextPointer(reader1, entry1), 
-                                                       mergedPostChannel, mergedPointer);
+                        mergedPointer = interleavePostings(postChannel1, entry1, postChannel2, entry2,
+                                                           mergedPostChannel, mergedPointer);
                     }
                     
                     vocabWriter.write(entry1.term + " " + (entry1.df + entry2.df) + " " + newPointer + "\n");
@@ -175,11 +182,83 @@ public class FileMerger {
         }
     }
 
+    // Doc id of the posting line starting at position
     private static long readFirstDocId(FileChannel channel, long position) throws IOException {
-        ByteBuffer buffer = ByteBuffer.allocate(8);
+        ByteBuffer buffer = ByteBuffer.allocate(32);
         channel.read(buffer, position);
         buffer.flip();
-        return buffer.getLong();
+
+        long docId = 0;
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b < '0' || b > '9') break;
+            docId = docId * 10 + (b - '0');
+        }
+        return docId;
+    }
+
+    // Doc id of the last posting line in [start, end)
+    private static long readLastDocId(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long chunkEnd = end - 1; // skip the final newline
+        while (chunkEnd > start) {
+            long chunkStart = Math.max(start, chunkEnd - buffer.capacity());
+            buffer.clear();
+            buffer.limit((int) (chunkEnd - chunkStart));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, chunkStart + buffer.position()) < 0) break;
+            }
+            for (int i = buffer.position() - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return readFirstDocId(channel, chunkStart + i + 1);
+                }
+            }
+            chunkEnd = chunkStart;
+        }
+        return readFirstDocId(channel, start);
+    }
+
+    private static long endPointer(FileChannel channel, long nextPointer) throws IOException {
+        return nextPointer == -1 ? channel.size() : nextPointer;
+    }
+
+    // Merges two ascending posting lists of the same term line by line, keeping docId order
+    private static long interleavePostings(FileChannel channel1, VocabEntry entry1,
+                                           FileChannel channel2, VocabEntry entry2,
+                                           FileChannel target, long targetPosition) throws IOException {
+        // The streams are not closed, since that would close the channels
+        BufferedReader reader1 = new BufferedReader(new InputStreamReader(
+            Channels.newInputStream(channel1.position(entry1.pointer)), StandardCharsets.US_ASCII));
+        BufferedReader reader2 = new BufferedReader(new InputStreamReader(
+            Channels.newInputStream(channel2.position(entry2.pointer)), StandardCharsets.US_ASCII));
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+            Channels.newOutputStream(target), StandardCharsets.US_ASCII));
+
+        int remaining1 = entry1.df;
+        int remaining2 = entry2.df;
+        String line1 = remaining1 > 0 ? reader1.readLine() : null;
+        String line2 = remaining2 > 0 ? reader2.readLine() : null;
+        long position = targetPosition;
+        while (line1 != null || line2 != null) {
+            boolean takeFirst = line2 == null
+                || (line1 != null && parseDocId(line1) <= parseDocId(line2));
+            String line = takeFirst ? line1 : line2;
+            writer.write(line);
+            writer.write('\n');
+            position += line.length() + 1;
+
+            if (takeFirst) {
+                line1 = --remaining1 > 0 ? reader1.readLine() : null;
+            } else {
+                line2 = --remaining2 > 0 ? reader2.readLine() : null;
+            }
+        }
+        writer.flush();
+        return position;
+    }
+
+    private static long parseDocId(String postingLine) {
+        return Long.parseLong(postingLine.substring(0, postingLine.indexOf(' ')));
     }
 
     private static long processTerm(VocabEntry entry, 
@@ -0,0 +1,75 @@
+package com.search.indexer.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.search.common.index.ForwardIndex;
+
+/**
+ * Converts the per-batch term vector files ("docId term:tf term:tf ...")
+ * into the merged index's ForwardIndex.bin, replacing terms by their
+ * vocabulary term ids.
+ */
+public class ForwardIndexBuilder {
+
+    public static void build(String resultDir, List<String> forwardPaths) throws IOException {
+        Path indexDir = Paths.get(resultDir);
+        Map<String, Integer> termIds = loadTermIds(indexDir.resolve("VocabularyFile.txt"));
+
+        try (ForwardIndex.Writer writer = new ForwardIndex.Writer(indexDir.resolve(ForwardIndex.FILE_NAME))) {
+            for (String forwardPath : forwardPaths) {
+                try (BufferedReader reader = Files.newBufferedReader(Paths.get(forwardPath), StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        addDocument(writer, line, termIds);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void addDocument(ForwardIndex.Writer writer, String line, Map<String, Integer> termIds) throws IOException {
+        String[] parts = line.split(" ");
+        long docId = Long.parseLong(parts[0]);
+
+        // Pack (termId, tf) so that sorting orders by term id
+        long[] entries = new long[parts.length - 1];
+        int count = 0;
+        for (int i = 1; i < parts.length; i++) {
+            int colon = parts[i].lastIndexOf(':');
+            Integer termId = termIds.get(parts[i].substring(0, colon));
+            if (termId == null) continue;
+
+            entries[count++] = ((long) termId << 32) | Integer.parseInt(parts[i].substring(colon + 1));
+        }
+        Arrays.sort(entries, 0, count);
+
+        int[] ids = new int[count];
+        int[] tfs = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = (int) (entries[i] >>> 32);
+            tfs[i] = (int) entries[i];
+        }
+        writer.add(docId, ids, tfs);
+    }
+
+    // Term id = line number (from 0) in the vocabulary
+    private static Map<String, Integer> loadTermIds(Path vocabFile) throws IOException {
+        Map<String, Integer> termIds = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(vocabFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                termIds.put(line.substring(0, line.indexOf(' ')), termIds.size());
+            }
+        }
+        return termIds;
+    }
+}
@@ -0,0 +1,136 @@
+package com.search.indexer.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+
+import com.search.common.index.BitmapPostings;
+import com.search.common.index.CollectionStatistics;
+import com.search.common.index.DocumentTable;
+import com.search.common.index.ImpactPostings;
+import com.search.query.evaluation.OkapiBM25;
+import com.search.query.reader.VocabularyReader;
+
+/**
+ * Writes ImpactPostings.bin, the impact-ordered copy of the postings used by
+ * score-at-a-time evaluation. Impacts are BM25 scores quantized to LEVELS
+ * steps of the highest score in the collection, which comes from the term
+ * bounds, so this must run after TermBoundsBuilder.
+ */
+public class ImpactPostingsBuilder {
+    // 12 bits: 8-bit impacts tie too many of the documents that share the common query terms
+    public static final int LEVELS = 4096;
+
+    public static void build(String indexDirPath) throws IOException {
+        Path indexDir = Paths.get(indexDirPath);
+        Path vocabFile = indexDir.resolve("VocabularyFile.txt");
+        Path target = indexDir.resolve(ImpactPostings.FILE_NAME);
+        Path lists = indexDir.resolve(ImpactPostings.FILE_NAME + ".tmp");
+
+        try (DocumentTable documents = DocumentTable.open(indexDir.toFile())) {
+            CollectionStatistics statistics = CollectionStatistics.compute(documents);
+            double averageLength = statistics.getAverageLength();
+            long totalDocuments = statistics.getDocuments();
+
+            // Highest score of any posting: idf times the term's highest BM25 factor
+            double maxScore = 0.0;
+            int termCount = 0;
+            try (BufferedReader vocabReader = Files.newBufferedReader(vocabFile)) {
+                String vocabLine;
+                while ((vocabLine = vocabReader.readLine()) != null) {
+                    String[] parts = vocabLine.split(" ");
+                    if (parts.length < 5) {
+                        throw new IOException("Vocabulary has no term bounds; run TermBoundsBuilder first");
+                    }
+                    double idf = OkapiBM25.idf(Integer.parseInt(parts[1]), totalDocuments);
+                    maxScore = Math.max(maxScore, idf * Double.parseDouble(parts[3]));
+                    termCount++;
+                }
+            }
+
+            long[] offsets = new long[termCount];
+            int[] lengths = new int[termCount];
+            try (BitmapPostings bitmapPostings = BitmapPostings.open(indexDir.toFile());
+                 BufferedReader vocabReader = Files.newBufferedReader(vocabFile);
+                 BufferedReader postingReader = Files.newBufferedReader(indexDir.resolve("PostingFile.txt"), StandardCharsets.US_ASCII);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(lists)))) {
+
+                long offset = ImpactPostings.HEADER_BYTES + (long) termCount * ImpactPostings.DIRECTORY_ENTRY_BYTES;
+                for (int termId = 0; termId < termCount; termId++) {
+                    String[] parts = vocabReader.readLine().split(" ");
+                    double idf = OkapiBM25.idf(Integer.parseInt(parts[1]), totalDocuments);
+                    String[] lines = BitmapPostingsBuilder.readLines(postingReader, VocabularyReader.postingsCount(parts),
+                                                                     bitmapPostings, termId);
+
+                    long[] docIds = new long[lines.length];
+                    int[] impacts = new int[lines.length];
+                    for (int i = 0; i < lines.length; i++) {
+                        String line = lines[i];
+                        int firstSpace = line.indexOf(' ');
+                        int secondSpace = line.indexOf(' ', firstSpace + 1);
+                        if (secondSpace < 0) secondSpace = line.length();
+
+                        docIds[i] = Long.parseLong(line.substring(0, firstSpace));
+                        int tf = Integer.parseInt(line.substring(firstSpace + 1, secondSpace));
+                        double factor = TermBoundsBuilder.bm25Factor(tf, documents, documents.ordinal(docIds[i]), averageLength);
+                        impacts[i] = ImpactPostings.quantize(idf * factor, maxScore, LEVELS);
+                    }
+
+                    offsets[termId] = offset;
+                    if (lines.length > 0) {
+                        int before = out.size();
+                        writeSegments(out, docIds, impacts);
+                        lengths[termId] = out.size() - before;
+                        offset += lengths[termId];
+                    }
+                }
+            }
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target)))) {
+                out.writeInt(termCount);
+                out.writeInt(LEVELS);
+                out.writeDouble(maxScore);
+                for (int termId = 0; termId < termCount; termId++) {
+                    out.writeLong(offsets[termId]);
+                    out.writeInt(lengths[termId]);
+                }
+                Files.copy(lists, out);
+            } finally {
+                Files.deleteIfExists(lists);
+            }
+        }
+    }
+
+    // Counting sort by impact, highest first; doc ids stay ascending within each impact
+    private static void writeSegments(DataOutputStream out, long[] docIds, int[] impacts) throws IOException {
+        int[] counts = new int[LEVELS + 1];
+        for (int impact : impacts) counts[impact]++;
+
+        int segmentCount = 0;
+        for (int impact = LEVELS; impact > 0; impact--) {
+            if (counts[impact] > 0) segmentCount++;
+        }
+        int[] segmentImpacts = new int[segmentCount];
+        long[][] segmentDocIds = new long[segmentCount][];
+        int[] segmentOf = new int[LEVELS + 1];
+        int s = 0;
+        for (int impact = LEVELS; impact > 0; impact--) {
+            if (counts[impact] == 0) continue;
+            segmentImpacts[s] = impact;
+            segmentDocIds[s] = new long[counts[impact]];
+            segmentOf[impact] = s++;
+        }
+
+        int[] filled = new int[segmentCount];
+        for (int i = 0; i < docIds.length; i++) {
+            int segment = segmentOf[impacts[i]];
+            segmentDocIds[segment][filled[segment]++] = docIds[i];
+        }
+        // Lists of older merges may not be sorted by docId
+        for (long[] segment : segmentDocIds) {
+            Arrays.sort(segment);
+        }
+        ImpactPostings.TermImpacts.write(out, segmentImpacts, segmentDocIds);
+    }
+}
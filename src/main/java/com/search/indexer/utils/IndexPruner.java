@@ -0,0 +1,174 @@
+package com.search.indexer.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import com.search.common.index.BitmapPostings;
+import com.search.common.index.DocValues;
+import com.search.common.index.ForwardIndex;
+import com.search.common.index.IndexMetadata;
+import com.search.common.index.KeywordIndex;
+import com.search.query.evaluation.OkapiBM25;
+import com.search.query.reader.VocabularyReader;
+
+public class IndexPruner {
+
+    public enum Mode {
+        // Drop postings whose impact is below a fixed score
+        GLOBAL,
+        // Drop postings whose impact is below a fraction of the term's best impact
+        PER_TERM
+    }
+
+    private final Path sourceDir;
+    private final Path targetDir;
+
+    private final Map<Long, Double> documentLengths = new HashMap<>();
+    private double avgDocLength;
+
+    private long postingsBefore;
+    private long postingsAfter;
+    private long termsBefore;
+    private long termsAfter;
+
+    public IndexPruner(String sourceDirPath, String targetDirPath) {
+        this.sourceDir = Paths.get(sourceDirPath);
+        this.targetDir = Paths.get(targetDirPath);
+    }
+
+    /**
+     * Writes a pruned copy of the source index into the target directory.
+     * @param mode GLOBAL compares each BM25 impact with threshold,
+     *             PER_TERM with threshold * (highest impact of the term)
+     * @param threshold Absolute score (GLOBAL) or fraction in [0, 1] (PER_TERM)
+     */
+    public void prune(Mode mode, double threshold) throws IOException {
+        Files.createDirectories(targetDir);
+        loadDocumentLengths();
+
+        Path vocabFile = sourceDir.resolve("VocabularyFile.txt");
+        Path postingsFile = sourceDir.resolve("PostingFile.txt");
+        long totalDocuments = documentLengths.size();
+        List<Integer> termIdMap = new ArrayList<>(); // old term id -> new term id, -1 if dropped
+
+        try (BitmapPostings bitmapPostings = BitmapPostings.open(sourceDir.toFile());
+             BufferedReader vocabReader = Files.newBufferedReader(vocabFile);
+             BufferedReader postingReader = Files.newBufferedReader(postingsFile, StandardCharsets.US_ASCII);
+             BufferedWriter vocabWriter = Files.newBufferedWriter(targetDir.resolve("VocabularyFile.txt"));
+             BufferedWriter postingWriter = Files.newBufferedWriter(targetDir.resolve("PostingFile.txt"), StandardCharsets.US_ASCII)) {
+
+            long pointer = 0;
+            String vocabLine;
+            while ((vocabLine = vocabReader.readLine()) != null) {
+                String[] parts = vocabLine.split(" ");
+                String term = parts[0];
+                int df = Integer.parseInt(parts[1]);
+                double idf = Math.log(1 + (totalDocuments - df + 0.5) / (df + 0.5));
+
+                // Postings are stored contiguously in vocabulary order, dense lists as bitmaps
+                String[] lines = BitmapPostingsBuilder.readLines(postingReader, VocabularyReader.postingsCount(parts),
+                                                                 bitmapPostings, (int) termsBefore);
+                double[] impacts = new double[lines.length];
+                double maxImpact = 0.0;
+                for (int i = 0; i < lines.length; i++) {
+                    impacts[i] = impact(lines[i], idf);
+                    maxImpact = Math.max(maxImpact, impacts[i]);
+                }
+
+                double cutoff = (mode == Mode.GLOBAL) ? threshold : threshold * maxImpact;
+                long termPointer = pointer;
+                int keptDf = 0;
+                for (int i = 0; i < lines.length; i++) {
+                    if (impacts[i] >= cutoff) {
+                        postingWriter.write(lines[i]);
+                        postingWriter.write('\n');
+                        pointer += lines[i].length() + 1;
+                        keptDf++;
+                    }
+                }
+
+                termsBefore++;
+                postingsBefore += lines.length;
+                postingsAfter += keptDf;
+
+                // Terms that lost every posting leave the vocabulary. The collection
+                // df stays in place for idf; the kept count follows the pointer
+                if (keptDf > 0) {
+                    vocabWriter.write(term + " " + df + " " + termPointer + (keptDf < df ? " " + keptDf : "") + "\n");
+                    termIdMap.add((int) termsAfter++);
+                } else {
+                    termIdMap.add(-1);
+                }
+            }
+        }
+
+        Files.copy(sourceDir.resolve("DocumentFile.txt"), targetDir.resolve("DocumentFile.txt"),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        // Term vectors keep every document, but only the surviving terms
+        ForwardIndex.rewrite(sourceDir.toFile(), targetDir.toFile(), docId -> docId, termIdMap::get);
+
+        // Keyword lookups are exact-match filters and are not pruned
+        KeywordIndex.rewrite(sourceDir.toFile(), targetDir.toFile(), docId -> docId);
+        for (String fileName : List.of(DocValues.FILE_NAME, DocValues.DICTIONARY_FILE_NAME)) {
+            if (Files.exists(sourceDir.resolve(fileName))) {
+                Files.copy(sourceDir.resolve(fileName), targetDir.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        // Duplicate clusters use external ids and carry over unchanged
+        Path duplicates = sourceDir.resolve(DuplicateDetector.FILE_NAME);
+        if (Files.exists(duplicates)) {
+            Files.copy(duplicates, targetDir.resolve(DuplicateDetector.FILE_NAME), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        IndexMetadata metadata = IndexMetadata.load(sourceDir.toFile());
+        metadata.set("pruning.mode", mode.name());
+        metadata.set("pruning.threshold", Double.toString(threshold));
+        metadata.store(targetDir.toFile());
+
+        // Score bounds and impacts of the surviving postings
+        TermBoundsBuilder.build(targetDir.toString());
+        ImpactPostingsBuilder.build(targetDir.toString());
+
+        // Dense lists are chosen again from the pruned postings
+        BitmapPostingsBuilder.build(targetDir.toString());
+    }
+
+    private void loadDocumentLengths() throws IOException {
+        documentLengths.clear();
+        try (BufferedReader reader = Files.newBufferedReader(sourceDir.resolve("DocumentFile.txt"))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                documentLengths.put(Long.parseLong(parts[0]), Double.parseDouble(parts[3]));
+            }
+        }
+        avgDocLength = documentLengths.values().stream()
+            .mapToDouble(Double::doubleValue)
+            .average()
+            .orElse(1.0);
+    }
+
+    // BM25 contribution of a single posting line ("docId tf [positions]")
+    private double impact(String line, double idf) {
+        int firstSpace = line.indexOf(' ');
+        int secondSpace = line.indexOf(' ', firstSpace + 1);
+        if (secondSpace < 0) secondSpace = line.length();
+
+        long docId = Long.parseLong(line.substring(0, firstSpace));
+        double tf = Double.parseDouble(line.substring(firstSpace + 1, secondSpace));
+        double docLength = documentLengths.getOrDefault(docId, avgDocLength);
+
+        double numerator = tf * (OkapiBM25.K1 + 1);
+        double denominator = tf + OkapiBM25.K1 * (1 - OkapiBM25.B + OkapiBM25.B * (docLength / avgDocLength));
+        return idf * (numerator / denominator);
+    }
+
+    public long getPostingsBefore() { return postingsBefore; }
+    public long getPostingsAfter() { return postingsAfter; }
+    public long getTermsBefore() { return termsBefore; }
+    public long getTermsAfter() { return termsAfter; }
+}
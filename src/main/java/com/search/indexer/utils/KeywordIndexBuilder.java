@@ -0,0 +1,51 @@
+package com.search.indexer.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.search.common.document.FieldType;
+import com.search.common.index.KeywordIndex;
+
+/**
+ * Groups the keyword-field lines of the per-batch keyword files
+ * ("FIELD<TAB>value<TAB>docId") by normalized value and writes the merged
+ * index's keyword dictionary and postings.
+ */
+public class KeywordIndexBuilder {
+
+    /**
+     * @return Number of distinct (field, value) keys written
+     */
+    public static int build(String resultDir, List<String> keywordPaths) throws IOException {
+        Map<String, List<Long>> groups = new TreeMap<>();
+        for (String keywordPath : keywordPaths) {
+            try (BufferedReader reader = Files.newBufferedReader(Paths.get(keywordPath), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split("\t");
+                    if (!KeywordIndex.FIELDS.contains(FieldType.valueOf(parts[0]))) continue;
+
+                    groups.computeIfAbsent(parts[0] + "\t" + KeywordIndex.normalize(parts[1]), k -> new ArrayList<>())
+                          .add(Long.parseLong(parts[2]));
+                }
+            }
+        }
+
+        Map<String, long[]> entries = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Long>> group : groups.entrySet()) {
+            // An author listed twice on one paper is still one posting
+            entries.put(group.getKey(), group.getValue().stream().mapToLong(Long::longValue).distinct().toArray());
+        }
+        KeywordIndex.write(new File(resultDir), entries);
+        return entries.size();
+    }
+}
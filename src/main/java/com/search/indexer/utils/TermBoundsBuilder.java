@@ -0,0 +1,169 @@
+package com.search.indexer.utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.search.common.index.BitmapPostings;
+import com.search.common.index.BlockMaxIndex;
+import com.search.common.index.CollectionStatistics;
+import com.search.common.index.DocumentTable;
+import com.search.common.index.IndexMetadata;
+import com.search.query.evaluation.OkapiBM25;
+import com.search.query.reader.VocabularyReader;
+
+/**
+ * Appends per-term score upper bounds to VocabularyFile.txt, turning each line
+ * into "term df pointer bm25Bound vsmBound" (pruned indexes keep their stored
+ * postings count as the last field). The bounds are the highest
+ * per-posting factors the models multiply by idf (and query weight):
+ *   bm25Bound = max tf * (K1 + 1) / (tf + K1 * (1 - B + B * dl / avgdl))
+ *   vsmBound  = max tf / (maxTf * norm)
+ * Dynamic pruning at query time derives rank-safe score bounds from them.
+ *
+ * The same pass writes BlockMaxIndex.bin with the maxima of every block of
+ * BlockMaxIndex.BLOCK_SIZE postings, for lists that are sorted by docId,
+ * and records in IndexMetadata.txt whether every list is sorted; query time
+ * refuses indexes whose lists are not.
+ *
+ * Must run after the norms are written; rewritten indexes run it again.
+ */
+public class TermBoundsBuilder {
+
+    public static void build(String indexDirPath) throws IOException {
+        Path indexDir = Paths.get(indexDirPath);
+        Path vocabFile = indexDir.resolve("VocabularyFile.txt");
+        Path tempFile = indexDir.resolve("VocabularyFile.tmp");
+        Path blockFile = indexDir.resolve(BlockMaxIndex.FILE_NAME);
+        Path blockList = indexDir.resolve(BlockMaxIndex.FILE_NAME + ".tmp");
+        List<long[]> directory = new ArrayList<>(); // {firstBlock, blockCount} per termId
+        boolean allSorted = true;
+
+        try (DocumentTable documents = DocumentTable.open(indexDir.toFile())) {
+            double averageLength = CollectionStatistics.compute(documents).getAverageLength();
+
+            try (BitmapPostings bitmapPostings = BitmapPostings.open(indexDir.toFile());
+                 BufferedReader vocabReader = Files.newBufferedReader(vocabFile);
+                 BufferedReader postingReader = Files.newBufferedReader(indexDir.resolve("PostingFile.txt"), StandardCharsets.US_ASCII);
+                 BufferedWriter vocabWriter = Files.newBufferedWriter(tempFile);
+                 DataOutputStream blockWriter = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(blockList)))) {
+
+                long blockCount = 0;
+                List<Block> termBlocks = new ArrayList<>();
+                int termId = 0;
+                String vocabLine;
+                while ((vocabLine = vocabReader.readLine()) != null) {
+                    String[] parts = vocabLine.split(" ");
+                    int postings = VocabularyReader.postingsCount(parts);
+
+                    // Postings are stored contiguously in vocabulary order; bitmap lists
+                    // (a rerun on a finished index) get bounds but no blocks
+                    String[] lines = BitmapPostingsBuilder.readLines(postingReader, postings, bitmapPostings, termId++);
+                    double bm25Bound = 0.0;
+                    double vsmBound = 0.0;
+                    long offset = 0;
+                    long previousDocId = Long.MIN_VALUE;
+                    boolean sorted = true;
+                    Block block = null;
+                    termBlocks.clear();
+                    for (int i = 0; i < lines.length; i++) {
+                        String line = lines[i];
+                        int firstSpace = line.indexOf(' ');
+                        int secondSpace = line.indexOf(' ', firstSpace + 1);
+                        if (secondSpace < 0) secondSpace = line.length();
+
+                        long docId = Long.parseLong(line.substring(0, firstSpace));
+                        int ordinal = documents.ordinal(docId);
+                        int tf = Integer.parseInt(line.substring(firstSpace + 1, secondSpace));
+                        double bm25 = bm25Factor(tf, documents, ordinal, averageLength);
+                        double vsm = ordinal >= 0 ? tf / (documents.getMaxFrequency(ordinal) * documents.getNorm(ordinal)) : 0.0;
+                        bm25Bound = Math.max(bm25Bound, bm25);
+                        vsmBound = Math.max(vsmBound, vsm);
+
+                        if (docId < previousDocId) sorted = false;
+                        previousDocId = docId;
+                        if (i % BlockMaxIndex.BLOCK_SIZE == 0) {
+                            block = new Block(offset);
+                            termBlocks.add(block);
+                        }
+                        block.add(docId, tf, bm25, vsm);
+                        offset += line.length() + 1;
+                    }
+
+                    String stored = postings == Integer.parseInt(parts[1]) ? "" : " " + postings;
+                    vocabWriter.write(parts[0] + " " + parts[1] + " " + parts[2] + " " + bm25Bound + " " + vsmBound + stored + "\n");
+
+                    // Unsorted lists (older merges) get no blocks
+                    allSorted &= sorted;
+                    if (sorted && postings > 0) {
+                        directory.add(new long[] { blockCount, termBlocks.size() });
+                        blockCount += termBlocks.size();
+                    } else {
+                        directory.add(new long[] { blockCount, 0 });
+                        termBlocks.clear();
+                    }
+                    for (Block termBlock : termBlocks) {
+                        termBlock.write(blockWriter);
+                    }
+                }
+            }
+        }
+        Files.move(tempFile, vocabFile, StandardCopyOption.REPLACE_EXISTING);
+
+        IndexMetadata metadata = IndexMetadata.load(indexDir.toFile());
+        metadata.setSortedPostings(allSorted);
+        metadata.store(indexDir.toFile());
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(blockFile)))) {
+            out.writeInt(directory.size());
+            out.writeInt(BlockMaxIndex.BLOCK_SIZE);
+            for (long[] entry : directory) {
+                out.writeLong(entry[0]);
+                out.writeInt((int) entry[1]);
+            }
+            Files.copy(blockList, out);
+        } finally {
+            Files.deleteIfExists(blockList);
+        }
+    }
+
+    // Maxima of one block of a posting list
+    private static class Block {
+        final long offset;
+        long lastDocId;
+        int maxTf;
+        double bm25Max;
+        double vsmMax;
+
+        Block(long offset) {
+            this.offset = offset;
+        }
+
+        void add(long docId, int tf, double bm25, double vsm) {
+            lastDocId = docId;
+            maxTf = Math.max(maxTf, tf);
+            bm25Max = Math.max(bm25Max, bm25);
+            vsmMax = Math.max(vsmMax, vsm);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(lastDocId);
+            out.writeLong(offset);
+            out.writeInt(maxTf);
+            out.writeDouble(bm25Max);
+            out.writeDouble(vsmMax);
+        }
+    }
+
+    // Same arithmetic as OkapiBM25 and EvaluationContext.getLengthNorms, so the bound is exact
+    static double bm25Factor(int tf, DocumentTable documents, int ordinal, double averageLength) {
+        double k1 = OkapiBM25.K1;
+        double b = OkapiBM25.B;
+        double lengthNorm = ordinal >= 0
+            ? k1 * (1 - b + b * (documents.getLength(ordinal) / averageLength))
+            : k1;
+        return tf * (k1 + 1) / (tf + lengthNorm);
+    }
+}
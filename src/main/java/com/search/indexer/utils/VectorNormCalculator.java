@@ -8,6 +8,9 @@ import java.util.*;
 import java.util.concurrent.*;
 import java.util.Map;
 
+import com.search.common.index.BitmapPostings;
+import com.search.query.reader.VocabularyReader;
+
 public class VectorNormCalculator {
     private final Path resultDir;
     private final Map<Long, Double> vectorNorms;
@@ -51,29 +54,42 @@ public class VectorNormCalculator {
         int numThreads = Runtime.getRuntime().availableProcessors();
         ExecutorService executor = Executors.newFixedThreadPool(numThreads);
         
-        try (BufferedReader vocabReader = Files.newBufferedReader(vocabFile)) {
+        try (BitmapPostings bitmapPostings = BitmapPostings.open(resultDir.toFile());
+             BufferedReader vocabReader = Files.newBufferedReader(vocabFile)) {
+            int termId = 0;
             String line;
             while ((line = vocabReader.readLine()) != null) {
                 final String vocabLine = line;
+                final int vocabTermId = termId++;
                 executor.execute(() -> {
                     try {
-                        processVocabEntry(buffers, vocabLine);
+                        processVocabEntry(buffers, bitmapPostings, vocabTermId, vocabLine);
                     } catch (Exception e) {
                         throw new CompletionException(e);
                     }
                 });
             }
-        } finally {
+            // The tasks read the bitmap lists, so they finish before it closes
             executor.shutdown();
             executor.awaitTermination(1, TimeUnit.HOURS);
+        } finally {
+            executor.shutdownNow();
         }
     }
 
-    private void processVocabEntry(List<ByteBuffer> buffers, String vocabLine) {
+    private void processVocabEntry(List<ByteBuffer> buffers, BitmapPostings bitmapPostings, int termId,
+                                   String vocabLine) throws IOException {
         String[] parts = vocabLine.split(" ");
         int df = Integer.parseInt(parts[1]);
+        int postings = VocabularyReader.postingsCount(parts);
         long pointer = Long.parseLong(parts[2]);
         double idf = Math.log(totalDocuments / (double) df);
+
+        // Lists moved to the bitmap postings store no text lines
+        if (postings == 0 && bitmapPostings != null && bitmapPostings.contains(termId)) {
+            bitmapPostings.get(termId).forEach((docId, tf) -> vectorNorms.merge(docId, Math.pow(tf * idf, 2), Double::sum));
+            return;
+        }
         
         // Get buffer and position for this pointer
         int bufIndex = (int) (pointer / Integer.MAX_VALUE);
@@ -81,7 +97,7 @@ public class VectorNormCalculator {
         ByteBuffer buffer = buffers.get(bufIndex).duplicate();
         buffer.position(bufOffset);
         
-        for (int i = 0; i < df; i++) {
+        for (int i = 0; i < postings; i++) {
             // Parse docID (read until space)
             long docId = 0;
             byte b;
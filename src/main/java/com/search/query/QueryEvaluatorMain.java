@@ -1,8 +1,14 @@
 package com.search.query;
 
+import com.search.common.index.DocValues;
 import com.search.common.utils.FileManager;
 import com.search.common.utils.StopWordManager;
+import com.search.query.evaluation.EvaluationContext;
+import com.search.query.evaluation.EvaluationStrategy;
+import com.search.query.evaluation.FacetCollector;
+import com.search.query.evaluation.IntersectionCache;
 import com.search.query.evaluation.QueryEvaluator;
+import com.search.query.evaluation.ScoringBudget;
 import com.search.query.expansion.QueryExpander;
 import com.search.query.evaluation.IRetrievalModelFactory;
 import com.search.query.model.Query;
@@ -13,9 +19,14 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.JOptionPane;
 
@@ -43,11 +54,35 @@ public class QueryEvaluatorMain {
                 options[0]
             );
 
-            evaluator = new QueryEvaluator(collectionPath, IRetrievalModelFactory.getModel(options[choice]));
+            String[] strategies = {"MaxScore", "WAND", "Block-Max WAND", "Document-at-a-time", "Term-at-a-time", "Score-at-a-time"};
+            int strategyChoice = JOptionPane.showOptionDialog(
+                null,
+                "Choose evaluation strategy:",
+                "Evaluation Strategy",
+                JOptionPane.DEFAULT_OPTION,
+                JOptionPane.QUESTION_MESSAGE,
+                null,
+                strategies,
+                strategies[0]
+            );
+            EvaluationStrategy[] strategyValues = {
+                EvaluationStrategy.MAX_SCORE, EvaluationStrategy.WAND, EvaluationStrategy.BLOCK_MAX_WAND,
+                EvaluationStrategy.DOCUMENT_AT_A_TIME, EvaluationStrategy.TERM_AT_A_TIME,
+                EvaluationStrategy.SCORE_AT_A_TIME
+            };
+            EvaluationStrategy strategy = strategyValues[Math.max(strategyChoice, 0)];
+
+            ScoringBudget budget = selectBudget(strategy);
+
+            evaluator = new QueryEvaluator(collectionPath, IRetrievalModelFactory.getModel(options[choice], strategy, budget));
+            if (selectIntersectionCache(strategy)) {
+                evaluator.getEvaluationContext().setIntersectionCache(
+                    new IntersectionCache(EvaluationContext.DEFAULT_INTERSECTION_CACHE_BYTES));
+            }
 
             // Process queries
             List<Query> queries = getQueries();
-            processQueries(queries);
+            processQueries(queries, selectThreads(), selectFacets(), selectSharedScan(strategy));
 
         } catch (Exception e) {
             JOptionPane.showMessageDialog(null, "Error: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
@@ -55,6 +90,25 @@ public class QueryEvaluatorMain {
         }
     }
 
+    // Limits of the strategies that take a budget, 0 for none
+    private static ScoringBudget selectBudget(EvaluationStrategy strategy) {
+        try {
+            if (strategy == EvaluationStrategy.SCORE_AT_A_TIME) {
+                String postings = JOptionPane.showInputDialog(null, "Postings per query (0 = no limit):", "0");
+                String millis = JOptionPane.showInputDialog(null, "Milliseconds per query (0 = no limit):", "0");
+                return ScoringBudget.of(postings != null ? Long.parseLong(postings.trim()) : 0,
+                                        millis != null ? Long.parseLong(millis.trim()) : 0);
+            }
+            if (strategy == EvaluationStrategy.TERM_AT_A_TIME) {
+                String accumulators = JOptionPane.showInputDialog(null, "Accumulators per query (0 = no limit):", "0");
+                return ScoringBudget.of(0, 0, accumulators != null ? Integer.parseInt(accumulators.trim()) : 0);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid scoring budget: " + e.getMessage() + ". Defaulting to none");
+        }
+        return ScoringBudget.UNLIMITED;
+    }
+
     private static String getCollectionPath() throws Exception {
         JOptionPane.showMessageDialog(null, "Select the Collection Index directory", "Collection Path", JOptionPane.INFORMATION_MESSAGE);
         FileManager.ensureDirectoryExists(FileManager.RESULT_DIR);
@@ -108,35 +162,131 @@ public class QueryEvaluatorMain {
         }
     }
 
-    private static void processQueries(List<Query> queries) {
-        final int MAX_RESULTS = 1000;
-        final String MODEL_NAME = evaluator.getModelName();
+    // Queries evaluated at once, all cores by default
+    private static int selectThreads() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        String threads = JOptionPane.showInputDialog(null, "Queries evaluated in parallel:", String.valueOf(cores));
+        try {
+            return threads != null ? Math.max(1, Integer.parseInt(threads.trim())) : cores;
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid thread count: " + threads + ". Defaulting to " + cores);
+            return cores;
+        }
+    }
+
+    // Facet counts need every match of a query, which turns pruning and the scoring budgets off
+    private static boolean selectFacets() {
+        String[] options = {"No", "Yes"};
+        int choice = JOptionPane.showOptionDialog(
+            null,
+            "Count facets over every match? (disables pruning)",
+            "Facets",
+            JOptionPane.DEFAULT_OPTION,
+            JOptionPane.QUESTION_MESSAGE,
+            null,
+            options,
+            options[0]
+        );
+        return choice == 1;
+    }
 
+    // Seeding from cached pair intersections only helps the pruning strategies, and only on long lists
+    private static boolean selectIntersectionCache(EvaluationStrategy strategy) {
+        if (strategy != EvaluationStrategy.MAX_SCORE && strategy != EvaluationStrategy.WAND
+                && strategy != EvaluationStrategy.BLOCK_MAX_WAND) {
+            return false;
+        }
+        String[] options = {"No", "Yes"};
+        int choice = JOptionPane.showOptionDialog(
+            null,
+            "Seed pruning from cached term-pair intersections?",
+            "Intersection Cache",
+            JOptionPane.DEFAULT_OPTION,
+            JOptionPane.QUESTION_MESSAGE,
+            null,
+            options,
+            options[0]
+        );
+        return choice == 1;
+    }
+
+    // A shared scan reads each term once for many queries but prunes nothing, so it is offered where nothing is pruned anyway
+    private static boolean selectSharedScan(EvaluationStrategy strategy) {
+        if (strategy != EvaluationStrategy.DOCUMENT_AT_A_TIME && strategy != EvaluationStrategy.TERM_AT_A_TIME) {
+            return false;
+        }
+        String[] options = {"One at a time", "Shared scan"};
+        int choice = JOptionPane.showOptionDialog(
+            null,
+            "Evaluate the initial queries:",
+            "Batch Evaluation",
+            JOptionPane.DEFAULT_OPTION,
+            JOptionPane.QUESTION_MESSAGE,
+            null,
+            options,
+            options[0]
+        );
+        return choice == 1;
+    }
+
+    private static void processQueries(List<Query> queries, int threads, boolean countFacets, boolean sharedScan) {
         final String EVALS_FILE  = FileManager.RESULT_DIR +File.separator + "retrieval";
-        final String OUTPUT_FILE = EVALS_FILE + File.separator + "query_results_" + MODEL_NAME + ".tsv";
+        final String OUTPUT_FILE = EVALS_FILE + File.separator + "query_results_" + evaluator.getModelName() + ".tsv";
         FileManager.ensureDirectoryExists(EVALS_FILE);
 
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(OUTPUT_FILE))) {
+        processQueries(evaluator, queries, OUTPUT_FILE, threads, countFacets, sharedScan);
+    }
+
+    // Evaluates (and expands) every query on all cores without facets, writing a TSV run file
+    public static void processQueries(QueryEvaluator evaluator, List<Query> queries, String outputFile) {
+        processQueries(evaluator, queries, outputFile, Runtime.getRuntime().availableProcessors(), false, false);
+    }
+
+    public static void processQueries(QueryEvaluator evaluator, List<Query> queries, String outputFile,
+                                      int threads, boolean countFacets) {
+        processQueries(evaluator, queries, outputFile, threads, countFacets, false);
+    }
+
+    /**
+     * Evaluates, expands and re-evaluates the queries on a pool of threads,
+     * writing the TSV run file in query order. Each query's console output is
+     * printed as one piece once it and every query before it are done.
+     * @param countFacets Also counts the facets of every match of the final queries, which
+     *                    evaluates them exhaustively: no pruning, budgets or result cache
+     * @param sharedScan  Evaluates the initial queries in shared-scan batches spread over
+     *                    the pool (see QueryEvaluator.evaluateAll) instead of one by one
+     */
+    public static void processQueries(QueryEvaluator evaluator, List<Query> queries, String outputFile,
+                                      int threads, boolean countFacets, boolean sharedScan) {
+        final int MAX_RESULTS = 1000;
+        final String MODEL_NAME = evaluator.getModelName();
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, queries.size())));
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile))) {
             writer.write("QUERY_ID\tPLACE_HOLDER\tDOC_ID\tRANK\tSCORE\tMODEL_USED\n");
 
-            for (Query query : queries) {
-                System.out.println("\nProcessing query (ID: " + query.getId() + "): " + query.getQuery());
+            List<Map<Long, Double>> initialResults = Collections.nCopies(queries.size(), null);
+            if (sharedScan) {
+                long batchStart = System.currentTimeMillis();
+                initialResults = evaluator.evaluateAll(queries, pool);
+                System.out.println("Batch evaluation of " + queries.size() + " queries took: "
+                                   + (System.currentTimeMillis() - batchStart) / 1000.0 + " seconds");
+            }
 
-                long startTime = System.currentTimeMillis();
-                Map<Long, Double> results = evaluator.evaluate(query);
+            List<Future<QueryRun>> runs = new ArrayList<>();
+            for (int i = 0; i < queries.size(); i++) {
+                Query query = queries.get(i);
+                Map<Long, Double> results = initialResults.get(i);
+                runs.add(pool.submit(() -> evaluateQuery(evaluator, query, results, countFacets)));
+            }
 
-                query = QueryExpander.expand(query, evaluator.getEvaluationContext(), results);
-                results = evaluator.evaluate(query);
-                
-                long duration = System.currentTimeMillis() - startTime;
-                System.out.println("Evaluation took: " + duration/1000.0 + " seconds");
-                System.out.println("Writing results to: " + OUTPUT_FILE);
+            for (Future<QueryRun> future : runs) {
+                QueryRun run = future.get();
+                System.out.print(run.log);
+                System.out.println("Writing results to: " + outputFile);
 
                 // Sort results by score descending
-                List<Map.Entry<Long, Double>> sortedResults = new ArrayList<>(results.entrySet());
-                sortedResults.sort(Map.Entry.comparingByValue(Comparator.reverseOrder()));
-
-                sortedResults = new ArrayList<>(results.entrySet());
+                List<Map.Entry<Long, Double>> sortedResults = new ArrayList<>(run.results.entrySet());
                 sortedResults.sort(Map.Entry.comparingByValue(Comparator.reverseOrder()));
 
                 int rank = 0;
@@ -153,8 +303,8 @@ public class QueryEvaluatorMain {
                     }
     
                     writer.write(String.format("%s\t0\t%d\t%d\t%.6f\t%s%n",
-                        query.getId(),
-                        entry.getKey(),
+                        run.query.getId(),
+                        evaluator.getEvaluationContext().getExternalId(entry.getKey()),
                         rank,
                         currentScore,
                         MODEL_NAME));
@@ -164,8 +314,65 @@ public class QueryEvaluatorMain {
                 }
                 writer.flush();
             }
+
+            if (evaluator.getResultCache() != null) {
+                System.out.println("Result cache: " + evaluator.getResultCache());
+            }
+            if (evaluator.getEvaluationContext().getPostingsCache() != null) {
+                System.out.println("Postings cache: " + evaluator.getEvaluationContext().getPostingsCache());
+            }
+            if (evaluator.getEvaluationContext().getIntersectionCache() != null) {
+                System.out.println("Intersection cache: " + evaluator.getEvaluationContext().getIntersectionCache());
+            }
         } catch (IOException e) {
             System.err.println("Error writing results: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Query processing interrupted");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Query evaluation failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Expansion and re-evaluation of one query, with the console output it produced.
+     * @param initialResults Results of the query before expansion, null to evaluate it here
+     */
+    private static QueryRun evaluateQuery(QueryEvaluator evaluator, Query query, Map<Long, Double> initialResults,
+                                          boolean countFacets) {
+        StringBuilder log = new StringBuilder();
+        log.append("\nProcessing query (ID: ").append(query.getId()).append("): ").append(query.getQuery()).append('\n');
+
+        long startTime = System.currentTimeMillis();
+        if (initialResults == null) {
+            initialResults = evaluator.evaluate(query);
+        }
+        query = QueryExpander.expand(query, evaluator.getEvaluationContext(), initialResults);
+
+        // Facet counts cover every match of the final query, so only requested ones are collected
+        DocValues docValues = evaluator.getEvaluationContext().getDocValues();
+        FacetCollector facets = countFacets && docValues != null ? new FacetCollector(docValues, DocValues.FIELDS) : null;
+        Map<Long, Double> results = evaluator.evaluate(query, facets);
+        if (facets != null) {
+            log.append(facets.getMatchCount()).append(" matches\n").append(facets.summary(5));
+        }
+
+        long duration = System.currentTimeMillis() - startTime;
+        log.append("Evaluation took: ").append(duration / 1000.0).append(" seconds\n");
+        return new QueryRun(query, results, log.toString());
+    }
+
+    private static final class QueryRun {
+        final Query query;
+        final Map<Long, Double> results;
+        final String log;
+
+        QueryRun(Query query, Map<Long, Double> results, String log) {
+            this.query = query;
+            this.results = results;
+            this.log = log;
         }
     }
 }
@@ -0,0 +1,97 @@
+package com.search.query.evaluation;
+
+import com.search.common.index.BitmapPostings;
+import java.util.Arrays;
+
+/**
+ * Cursor over a posting list decoded into parallel primitive arrays.
+ * advance() gallops from the current position, so short skips stay cheap
+ * and long ones cost O(log distance).
+ */
+final class ArrayPostingsCursor implements PostingsCursor {
+    private final long[] docIds;
+    private final int[] tfs;
+    private int index = -1;
+
+    ArrayPostingsCursor(long[] docIds, int[] tfs) {
+        this.docIds = docIds;
+        this.tfs = tfs;
+    }
+
+    @Override
+    public long docId() {
+        if (index < 0) return -1;
+        return index < docIds.length ? docIds[index] : NO_MORE_DOCS;
+    }
+
+    @Override
+    public int freq() {
+        return tfs[index];
+    }
+
+    @Override
+    public long nextDoc() {
+        if (index < docIds.length) index++;
+        return docId();
+    }
+
+    @Override
+    public long advance(long target) {
+        int from = Math.max(index, 0);
+        if (from >= docIds.length || docIds[from] >= target) {
+            index = from;
+            return docId();
+        }
+
+        // Gallop to a range that holds the target, then binary search it
+        int step = 1;
+        int to = from + 1;
+        while (to < docIds.length && docIds[to] < target) {
+            from = to;
+            step <<= 1;
+            to = from + step;
+        }
+        to = Math.min(to, docIds.length);
+
+        int found = Arrays.binarySearch(docIds, from + 1, to, target);
+        index = found >= 0 ? found : -found - 1;
+        return docId();
+    }
+
+    @Override
+    public int cost() {
+        return docIds.length;
+    }
+
+    @Override
+    public PostingsCursor fork() {
+        return new ArrayPostingsCursor(docIds, tfs);
+    }
+
+    // Collects decoded postings, which the index keeps in docId order
+    static final class Builder implements BitmapPostings.PostingConsumer {
+        private final long[] docIds;
+        private final int[] tfs;
+        private int size;
+
+        Builder(int df) {
+            docIds = new long[df];
+            tfs = new int[df];
+        }
+
+        @Override
+        public void accept(long docId, int tf) {
+            docIds[size] = docId;
+            tfs[size] = tf;
+            size++;
+        }
+
+        ArrayPostingsCursor build() {
+            return new ArrayPostingsCursor(docIds, tfs);
+        }
+
+        DecodedPostings decode() {
+            return new DecodedPostings(docIds, tfs);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.search.query.evaluation;
+
+import com.search.common.index.BlockMaxIndex;
+import com.search.common.index.PostingsFile;
+import com.search.common.index.ScoreFactor;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Cursor over the mapped text postings that decodes one block at a time.
+ * advance() binary-searches the block directory for the target's block and
+ * only parses that block, so skipped blocks are never read; shallowAdvance()
+ * exposes the block maxima to block-max pruning without decoding at all.
+ * When the list is in the PostingsCache, blocks are copied from the decoded
+ * arrays instead of parsed.
+ */
+final class BlockPostingsCursor implements PostingsCursor {
+    private final PostingsFile postings;
+    private final long pointer;
+    private final int df;
+    private final BlockMaxIndex.Blocks blocks;
+    private final ScoreFactor factor;
+    private final double termMax;
+    private final DecodedPostings decoded;   // null if the list is not cached
+
+    private final long[] docIds;
+    private final int[] tfs;
+    private int block = -1;
+    private int blockLength;
+    private int index;
+    private long docId = -1;
+    private int shallowBlock;
+
+    BlockPostingsCursor(PostingsFile postings, long pointer, int df, BlockMaxIndex.Blocks blocks, ScoreFactor factor,
+                        DecodedPostings decoded) {
+        this.postings = postings;
+        this.decoded = decoded;
+        this.pointer = pointer;
+        this.df = df;
+        this.blocks = blocks;
+        this.factor = factor;
+        this.docIds = new long[blocks.blockSize()];
+        this.tfs = new int[blocks.blockSize()];
+
+        double max = 0.0;
+        for (int b = 0; b < blocks.count(); b++) {
+            max = Math.max(max, blocks.maxFactor(b, factor));
+        }
+        this.termMax = max;
+    }
+
+    private BlockPostingsCursor(BlockPostingsCursor other) {
+        this.postings = other.postings;
+        this.decoded = other.decoded;
+        this.pointer = other.pointer;
+        this.df = other.df;
+        this.blocks = other.blocks;
+        this.factor = other.factor;
+        this.termMax = other.termMax;
+        this.docIds = new long[blocks.blockSize()];
+        this.tfs = new int[blocks.blockSize()];
+    }
+
+    @Override
+    public long docId() {
+        return docId;
+    }
+
+    @Override
+    public int freq() {
+        return tfs[index];
+    }
+
+    @Override
+    public long nextDoc() throws IOException {
+        if (docId == NO_MORE_DOCS) return docId;
+        if (block >= 0 && index + 1 < blockLength) {
+            index++;
+            return docId = docIds[index];
+        }
+        if (block + 1 >= blocks.count()) {
+            return docId = NO_MORE_DOCS;
+        }
+        load(block + 1);
+        return docId = docIds[index];
+    }
+
+    @Override
+    public long advance(long target) throws IOException {
+        if (docId >= target) return docId;
+
+        int found = blocks.find(target, Math.max(block, 0));
+        if (found == blocks.count()) {
+            return docId = NO_MORE_DOCS;
+        }
+        if (found != block) {
+            load(found);
+        }
+
+        // The block's last docId is >= target, so the search always lands inside it
+        int position = Arrays.binarySearch(docIds, index, blockLength, target);
+        index = position >= 0 ? position : -position - 1;
+        return docId = docIds[index];
+    }
+
+    @Override
+    public int cost() {
+        return df;
+    }
+
+    // Blocks are decoded lazily, so the fork only reads the blocks it visits
+    @Override
+    public PostingsCursor fork() {
+        return new BlockPostingsCursor(this);
+    }
+
+    @Override
+    public long shallowAdvance(long target) {
+        shallowBlock = blocks.find(target, Math.max(block, 0));
+        return shallowBlock == blocks.count() ? NO_MORE_DOCS : blocks.lastDocId(shallowBlock);
+    }
+
+    @Override
+    public double blockBoundRatio() {
+        if (shallowBlock == blocks.count() || termMax == 0.0) return 0.0;
+        return blocks.maxFactor(shallowBlock, factor) / termMax;
+    }
+
+    private void load(int b) throws IOException {
+        block = b;
+        blockLength = Math.min(blocks.blockSize(), df - b * blocks.blockSize());
+        if (decoded != null) {
+            System.arraycopy(decoded.docIds, b * blocks.blockSize(), docIds, 0, blockLength);
+            System.arraycopy(decoded.tfs, b * blocks.blockSize(), tfs, 0, blockLength);
+        } else {
+            postings.read(pointer + blocks.offset(b), blockLength, docIds, tfs);
+        }
+        index = 0;
+    }
+}
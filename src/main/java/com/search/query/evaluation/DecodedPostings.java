@@ -0,0 +1,35 @@
+package com.search.query.evaluation;
+
+import com.search.common.index.BitmapPostings;
+
+/**
+ * A term's postings decoded into parallel primitive arrays in ascending
+ * docId order. Instances are immutable once built and may be shared by
+ * concurrent queries through the PostingsCache.
+ */
+final class DecodedPostings {
+    // Estimated heap cost besides the arrays' elements
+    static final int OVERHEAD_BYTES = 64;
+
+    final long[] docIds;
+    final int[] tfs;
+
+    DecodedPostings(long[] docIds, int[] tfs) {
+        this.docIds = docIds;
+        this.tfs = tfs;
+    }
+
+    int size() {
+        return docIds.length;
+    }
+
+    void forEach(BitmapPostings.PostingConsumer consumer) {
+        for (int i = 0; i < docIds.length; i++) {
+            consumer.accept(docIds[i], tfs[i]);
+        }
+    }
+
+    static long bytes(int df) {
+        return OVERHEAD_BYTES + (long) df * (Long.BYTES + Integer.BYTES);
+    }
+}
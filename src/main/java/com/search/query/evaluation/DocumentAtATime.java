@@ -0,0 +1,53 @@
+package com.search.query.evaluation;
+
+import java.io.IOException;
+import java.util.function.LongPredicate;
+
+/**
+ * Document-at-a-time evaluation. The cursors of all query terms move together
+ * in docId order and every document is scored completely before the next one,
+ * so memory is bounded by the cursors and the top-k heap instead of the union
+ * of the matching documents.
+ */
+final class DocumentAtATime {
+
+    // Final score of a document from the sum of its term contributions
+    interface ScoreFinisher {
+        double finish(long docId, double score);
+    }
+
+    private DocumentAtATime() {}
+
+    /**
+     * @param scorers scorers[i] scores the postings of cursors[i]; contributions
+     *                are summed in cursor order
+     */
+    static TopKHeap evaluate(PostingsCursor[] cursors, ScoringKernel.TermScorer[] scorers,
+                             ScoreFinisher finisher, EvaluationContext context,
+                             LongPredicate filter, int k) throws IOException {
+        TopKHeap topResults = new TopKHeap(k);
+        for (PostingsCursor cursor : cursors) {
+            cursor.nextDoc();
+        }
+
+        while (true) {
+            long docId = PostingsCursor.NO_MORE_DOCS;
+            for (PostingsCursor cursor : cursors) {
+                docId = Math.min(docId, cursor.docId());
+            }
+            if (docId == PostingsCursor.NO_MORE_DOCS) break;
+
+            double score = 0;
+            for (int i = 0; i < cursors.length; i++) {
+                if (cursors[i].docId() == docId) {
+                    score += scorers[i].score(docId, cursors[i].freq());
+                    cursors[i].nextDoc();
+                }
+            }
+
+            if (context.isDuplicate(docId) || !filter.test(docId)) continue;
+            topResults.offer(docId, finisher.finish(docId, score));
+        }
+        return topResults;
+    }
+}
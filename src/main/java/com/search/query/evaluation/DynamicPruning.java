@@ -0,0 +1,298 @@
+package com.search.query.evaluation;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * Rank-safe dynamic pruning over postings cursors. Each term has an upper
+ * bound on its contribution to a final score; documents whose bounds cannot
+ * beat the current k-th best score are skipped without being scored.
+ * The surviving documents are scored exactly as DocumentAtATime scores them,
+ * so the top k are identical.
+ *
+ * The threshold can be seeded with a floor from seedThreshold, so that
+ * skipping starts at the first document instead of once the heap is full.
+ */
+final class DynamicPruning {
+    // Slack on the bounds so that rounding in the scores cannot make a skipped document a winner
+    private static final double BOUND_SLACK = 1e-9;
+
+    private DynamicPruning() {}
+
+    /**
+     * MaxScore: terms are ordered by bound; the lowest-bound terms whose bounds
+     * together cannot beat the threshold are non-essential. Only documents of
+     * the essential terms are candidates, and the non-essential cursors are
+     * advanced to a candidate only while it can still make it into the top k.
+     */
+    static TopKHeap maxScore(PostingsCursor[] cursors, ScoringKernel.TermScorer[] scorers, double[] upperBounds,
+                             DocumentAtATime.ScoreFinisher finisher, EvaluationContext context,
+                             LongPredicate filter, double floor, int k) throws IOException {
+        int n = cursors.length;
+        int[] order = orderByBound(upperBounds);
+        double[] cumulative = new double[n];   // sum of the bounds of order[0..j]
+        for (int j = 0; j < n; j++) {
+            cumulative[j] = (j > 0 ? cumulative[j - 1] : 0) + upperBounds[order[j]] * (1 + BOUND_SLACK);
+        }
+
+        TopKHeap topResults = new TopKHeap(k);
+        double[] contributions = new double[n];
+        for (PostingsCursor cursor : cursors) {
+            cursor.nextDoc();
+        }
+
+        int firstEssential = 0;
+        while (true) {
+            double threshold = Math.max(floor, topResults.isFull() ? topResults.minScore() : Double.NEGATIVE_INFINITY);
+            while (firstEssential < n && cumulative[firstEssential] <= threshold) {
+                firstEssential++;
+            }
+            if (firstEssential == n) break;
+
+            long docId = PostingsCursor.NO_MORE_DOCS;
+            for (int j = firstEssential; j < n; j++) {
+                docId = Math.min(docId, cursors[order[j]].docId());
+            }
+            if (docId == PostingsCursor.NO_MORE_DOCS) break;
+
+            double partial = 0;
+            for (int j = firstEssential; j < n; j++) {
+                PostingsCursor cursor = cursors[order[j]];
+                if (cursor.docId() == docId) {
+                    contributions[order[j]] = scorers[order[j]].score(docId, cursor.freq());
+                    partial += contributions[order[j]];
+                    cursor.nextDoc();
+                }
+            }
+
+            boolean candidate = !context.isDuplicate(docId) && filter.test(docId);
+
+            // Non-essential terms, highest bound first, while the document can still win
+            for (int j = firstEssential - 1; j >= 0 && candidate; j--) {
+                if (finisher.finish(docId, partial) + cumulative[j] <= threshold) {
+                    candidate = false;
+                    break;
+                }
+                PostingsCursor cursor = cursors[order[j]];
+                if (cursor.docId() < docId) cursor.advance(docId);
+                if (cursor.docId() == docId) {
+                    contributions[order[j]] = scorers[order[j]].score(docId, cursor.freq());
+                    partial += contributions[order[j]];
+                }
+            }
+
+            if (candidate) {
+                topResults.offer(docId, finisher.finish(docId, sumInTermOrder(contributions)));
+            }
+            Arrays.fill(contributions, 0.0);
+        }
+        return topResults;
+    }
+
+    /**
+     * WAND: cursors are kept sorted by current document. The pivot is the first
+     * cursor at which the summed bounds exceed the threshold; no document before
+     * the pivot's can win, so the cursors in front of it jump straight to it.
+     */
+    static TopKHeap wand(PostingsCursor[] cursors, ScoringKernel.TermScorer[] scorers, double[] upperBounds,
+                         DocumentAtATime.ScoreFinisher finisher, EvaluationContext context,
+                         LongPredicate filter, double floor, int k) throws IOException {
+        int[] byDoc = start(cursors);
+        TopKHeap topResults = new TopKHeap(k);
+        double[] contributions = new double[cursors.length];
+        while (true) {
+            sortByDoc(byDoc, cursors);
+            double threshold = Math.max(floor, topResults.isFull() ? topResults.minScore() : Double.NEGATIVE_INFINITY);
+
+            int pivot = pivot(byDoc, cursors, upperBounds, threshold);
+            if (pivot < 0) break;
+
+            long pivotDoc = cursors[byDoc[pivot]].docId();
+            if (!moveToPivot(byDoc, cursors, pivot, pivotDoc)) continue;
+
+            scorePivot(pivotDoc, cursors, scorers, contributions, finisher, context, filter, topResults);
+        }
+        return topResults;
+    }
+
+    /**
+     * Block-max WAND: the pivot is found with the term bounds as in WAND, then
+     * checked against the maxima of the blocks that hold it. If even those
+     * cannot beat the threshold, no document up to the end of the shortest of
+     * these blocks can win, and the cursors up to the pivot jump past it.
+     */
+    static TopKHeap blockMaxWand(PostingsCursor[] cursors, ScoringKernel.TermScorer[] scorers, double[] upperBounds,
+                                 DocumentAtATime.ScoreFinisher finisher, EvaluationContext context,
+                                 LongPredicate filter, double floor, int k) throws IOException {
+        int n = cursors.length;
+        int[] byDoc = start(cursors);
+        TopKHeap topResults = new TopKHeap(k);
+        double[] contributions = new double[n];
+        while (true) {
+            sortByDoc(byDoc, cursors);
+            double threshold = Math.max(floor, topResults.isFull() ? topResults.minScore() : Double.NEGATIVE_INFINITY);
+
+            int pivot = pivot(byDoc, cursors, upperBounds, threshold);
+            if (pivot < 0) break;
+
+            // Every cursor on the pivot document takes part in the block check
+            long pivotDoc = cursors[byDoc[pivot]].docId();
+            while (pivot + 1 < n && cursors[byDoc[pivot + 1]].docId() == pivotDoc) {
+                pivot++;
+            }
+
+            double blockBound = 0;
+            long blockEnd = PostingsCursor.NO_MORE_DOCS;
+            for (int p = 0; p <= pivot; p++) {
+                PostingsCursor cursor = cursors[byDoc[p]];
+                blockEnd = Math.min(blockEnd, cursor.shallowAdvance(pivotDoc));
+                blockBound += upperBounds[byDoc[p]] * cursor.blockBoundRatio() * (1 + BOUND_SLACK);
+            }
+
+            if (blockBound <= threshold) {
+                // Documents in [pivotDoc, next) only occur in these blocks, whose maxima cannot win
+                long next = blockEnd == PostingsCursor.NO_MORE_DOCS ? blockEnd : blockEnd + 1;
+                if (pivot + 1 < n) {
+                    next = Math.min(next, cursors[byDoc[pivot + 1]].docId());
+                }
+                for (int p = 0; p <= pivot; p++) {
+                    cursors[byDoc[p]].advance(next);
+                }
+                continue;
+            }
+
+            if (!moveToPivot(byDoc, cursors, pivot, pivotDoc)) continue;
+
+            scorePivot(pivotDoc, cursors, scorers, contributions, finisher, context, filter, topResults);
+        }
+        return topResults;
+    }
+
+    // Moves every cursor to its first document; returns the cursor indexes for sortByDoc
+    private static int[] start(PostingsCursor[] cursors) throws IOException {
+        int[] byDoc = new int[cursors.length];
+        for (int i = 0; i < cursors.length; i++) {
+            byDoc[i] = i;
+            cursors[i].nextDoc();
+        }
+        return byDoc;
+    }
+
+    // First position in byDoc at which the summed bounds exceed the threshold, -1 if there is none
+    private static int pivot(int[] byDoc, PostingsCursor[] cursors, double[] upperBounds, double threshold) {
+        double bound = 0;
+        for (int p = 0; p < byDoc.length; p++) {
+            if (cursors[byDoc[p]].docId() == PostingsCursor.NO_MORE_DOCS) return -1;
+            bound += upperBounds[byDoc[p]] * (1 + BOUND_SLACK);
+            if (bound > threshold) return p;
+        }
+        return -1;
+    }
+
+    /**
+     * True if every cursor up to the pivot is on the pivot document; otherwise
+     * the ones in front of it jump to it and the pivot has to be found again.
+     */
+    private static boolean moveToPivot(int[] byDoc, PostingsCursor[] cursors, int pivot, long pivotDoc) throws IOException {
+        if (cursors[byDoc[0]].docId() == pivotDoc) return true;
+        for (int p = 0; p < pivot; p++) {
+            PostingsCursor cursor = cursors[byDoc[p]];
+            if (cursor.docId() < pivotDoc) cursor.advance(pivotDoc);
+        }
+        return false;
+    }
+
+    // Scores the pivot document fully, offers it if it qualifies and moves its cursors on
+    private static void scorePivot(long pivotDoc, PostingsCursor[] cursors, ScoringKernel.TermScorer[] scorers,
+                                   double[] contributions, DocumentAtATime.ScoreFinisher finisher,
+                                   EvaluationContext context, LongPredicate filter,
+                                   TopKHeap topResults) throws IOException {
+        for (int i = 0; i < cursors.length; i++) {
+            if (cursors[i].docId() == pivotDoc) {
+                contributions[i] = scorers[i].score(pivotDoc, cursors[i].freq());
+                cursors[i].nextDoc();
+            }
+        }
+        if (!context.isDuplicate(pivotDoc) && filter.test(pivotDoc)) {
+            topResults.offer(pivotDoc, finisher.finish(pivotDoc, sumInTermOrder(contributions)));
+        }
+        Arrays.fill(contributions, 0.0);
+    }
+
+    /**
+     * Lower bound on the final k-th best score from the intersection of two
+     * query terms: its k documents with the highest partial score of the
+     * pair are scored completely, and any document scoring below all of them
+     * cannot make the top k.
+     * @param cursors Forks of the cursors of all query terms, only used here
+     * @return NEGATIVE_INFINITY if fewer than k documents of the intersection qualify
+     */
+    static double seedThreshold(IntersectionCache.Intersection intersection, int first, int second,
+                                PostingsCursor[] cursors, ScoringKernel.TermScorer[] scorers,
+                                DocumentAtATime.ScoreFinisher finisher, EvaluationContext context,
+                                LongPredicate filter, int k) throws IOException {
+        if (intersection.size() < k) return Double.NEGATIVE_INFINITY;
+
+        TopKHeap byPair = new TopKHeap(k);
+        for (int i = 0; i < intersection.size(); i++) {
+            long docId = intersection.docIds[i];
+            if (context.isDuplicate(docId) || !filter.test(docId)) continue;
+            byPair.offer(docId, scorers[first].score(docId, intersection.firstTfs[i])
+                                + scorers[second].score(docId, intersection.secondTfs[i]));
+        }
+        if (!byPair.isFull()) return Double.NEGATIVE_INFINITY;
+
+        long[] seeds = byPair.toMap().keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        double[] contributions = new double[cursors.length];
+        double kth = Double.POSITIVE_INFINITY;
+        for (long docId : seeds) {
+            for (int i = 0; i < cursors.length; i++) {
+                PostingsCursor cursor = cursors[i];
+                if (cursor.docId() < docId) cursor.advance(docId);
+                contributions[i] = cursor.docId() == docId ? scorers[i].score(docId, cursor.freq()) : 0.0;
+            }
+            kth = Math.min(kth, finisher.finish(docId, sumInTermOrder(contributions)));
+        }
+
+        // Just under the k-th score, so that documents tied with it are still scored
+        return kth > 0 ? kth * (1 - BOUND_SLACK) : Double.NEGATIVE_INFINITY;
+    }
+
+    // Same summation order as DocumentAtATime; absent terms add an exact 0
+    private static double sumInTermOrder(double[] contributions) {
+        double score = 0;
+        for (double contribution : contributions) {
+            score += contribution;
+        }
+        return score;
+    }
+
+    // Term indexes by ascending upper bound
+    private static int[] orderByBound(double[] upperBounds) {
+        int[] order = new int[upperBounds.length];
+        for (int i = 0; i < order.length; i++) {
+            int j = i;
+            while (j > 0 && upperBounds[order[j - 1]] > upperBounds[i]) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = i;
+        }
+        return order;
+    }
+
+    // Insertion sort: between iterations only a few cursors move
+    private static void sortByDoc(int[] byDoc, PostingsCursor[] cursors) {
+        for (int i = 1; i < byDoc.length; i++) {
+            int index = byDoc[i];
+            long docId = cursors[index].docId();
+            int j = i;
+            while (j > 0 && cursors[byDoc[j - 1]].docId() > docId) {
+                byDoc[j] = byDoc[j - 1];
+                j--;
+            }
+            byDoc[j] = index;
+        }
+    }
+}
@@ -1,40 +1,112 @@
 package com.search.query.evaluation;
 
+import com.search.common.index.BitmapPostings;
+import com.search.common.index.BlockMaxIndex;
+import com.search.common.index.CollectionStatistics;
+import com.search.common.index.DocValues;
+import com.search.common.index.DocumentTable;
+import com.search.common.index.ForwardIndex;
+import com.search.common.index.ImpactPostings;
+import com.search.common.index.IndexMetadata;
+import com.search.common.index.KeywordIndex;
+import com.search.common.index.PostingsFile;
 import com.search.query.model.VocabularyTrie;
 
+import java.io.IOException;
 import java.util.Map;
-import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class EvaluationContext {
+    public static final long DEFAULT_POSTINGS_CACHE_BYTES = 64L << 20;
+    // Budget of the intersection cache when it is turned on
+    public static final long DEFAULT_INTERSECTION_CACHE_BYTES = 16L << 20;
+
     private final VocabularyTrie vocabulary;
-    private final Map<Long, String> documentPaths;
-    private final Map<Long, Double> documentNorms;
-    private final Map<Long, Double> documentLengths;
-    private final Map<Long, Double> documentMaxFreqs;
-    private final long totalDocuments;
-    private final Path postingsFile;
+    private final DocumentTable documents;
+    private final Map<Long, Long> duplicateClusters;
+    private final CollectionStatistics statistics;
+    private final Map<String, double[]> lengthNorms = new ConcurrentHashMap<>();
+    private final PostingsFile postings;
+    private final BlockMaxIndex blockMaxIndex;
+    private final ImpactPostings impactPostings;
+    private final IndexMetadata metadata;
+    private final ForwardIndex forwardIndex;
+    private final BitmapPostings bitmapPostings;
+    private final KeywordIndex keywordIndex;
+    private final DocValues docValues;
+    private volatile PostingsCache postingsCache = new PostingsCache(DEFAULT_POSTINGS_CACHE_BYTES);
+    private volatile IntersectionCache intersectionCache;
 
     public EvaluationContext(VocabularyTrie vocabulary, 
-                            Map<Long, Double> documentNorms,
-                            Map<Long, Double> documentLengths,
-                            Map<Long, Double> documentMaxFreqs,
-                            Map<Long, String> documentPaths,
-                            Path postingsFile) {
+                            DocumentTable documents,
+                            CollectionStatistics statistics,
+                            Map<Long, Long> duplicateClusters,
+                            PostingsFile postings,
+                            BlockMaxIndex blockMaxIndex,
+                            ImpactPostings impactPostings,
+                            IndexMetadata metadata,
+                            ForwardIndex forwardIndex,
+                            BitmapPostings bitmapPostings,
+                            KeywordIndex keywordIndex,
+                            DocValues docValues) {
         this.vocabulary = vocabulary;
-        this.documentNorms = documentNorms;
-        this.documentLengths = documentLengths;
-        this.documentMaxFreqs = documentMaxFreqs;
-        this.documentPaths = documentPaths;
-        this.totalDocuments = documentPaths.size();
-        this.postingsFile = postingsFile;
+        this.documents = documents;
+        this.duplicateClusters = duplicateClusters;
+        this.statistics = statistics;
+        this.postings = postings;
+        this.blockMaxIndex = blockMaxIndex;
+        this.impactPostings = impactPostings;
+        this.metadata = metadata;
+        this.forwardIndex = forwardIndex;
+        this.bitmapPostings = bitmapPostings;
+        this.keywordIndex = keywordIndex;
+        this.docValues = docValues;
     }
 
     // Getters
     public VocabularyTrie getVocabulary() { return vocabulary; }
-    public Map<Long, String> getDocumentPaths() { return documentPaths; }
-    public Map<Long, Double> getDocumentNorms() { return documentNorms; }
-    public Map<Long, Double> getDocumentLengths() { return documentLengths; }
-    public Map<Long, Double> getDocumentMaxFrequenc() { return documentMaxFreqs; }
-    public long getTotalDocuments() { return totalDocuments; }
-    public Path getPostingsPath() { return postingsFile; }
-}
\ No newline at end of file
+    public DocumentTable getDocuments() { return documents; }
+    public CollectionStatistics getStatistics() { return statistics; }
+    public long getTotalDocuments() { return statistics.getDocuments(); }
+    public long getExternalId(long docId) {
+        int ordinal = documents.ordinal(docId);
+        return ordinal < 0 ? docId : documents.getExternalId(ordinal);
+    }
+    public String getDocumentPath(long docId) throws IOException {
+        int ordinal = documents.ordinal(docId);
+        return ordinal < 0 ? null : documents.getPath(ordinal);
+    }
+    public boolean isDuplicate(long docId) { return !duplicateClusters.isEmpty() && duplicateClusters.containsKey(getExternalId(docId)); }
+    public PostingsFile getPostings() { return postings; }
+    public BlockMaxIndex getBlockMaxIndex() { return blockMaxIndex; }
+    public ImpactPostings getImpactPostings() { return impactPostings; }
+    public IndexMetadata getMetadata() { return metadata; }
+    public ForwardIndex getForwardIndex() { return forwardIndex; }
+    public BitmapPostings getBitmapPostings() { return bitmapPostings; }
+    public KeywordIndex getKeywordIndex() { return keywordIndex; }
+    public DocValues getDocValues() { return docValues; }
+    public PostingsCache getPostingsCache() { return postingsCache; }
+
+    // Decoded postings of hot terms shared by every query on this index; null turns it off
+    public void setPostingsCache(PostingsCache postingsCache) { this.postingsCache = postingsCache; }
+    public IntersectionCache getIntersectionCache() { return intersectionCache; }
+
+    /**
+     * Intersections of frequent term pairs that seed the pruning threshold;
+     * off (null) by default. Seeding saves scoring but costs an intersection
+     * scan per query, so it only pays off where lists are long.
+     */
+    public void setIntersectionCache(IntersectionCache intersectionCache) { this.intersectionCache = intersectionCache; }
+
+    // k1 * (1 - b + b * dl / avgdl) per document ordinal, built once per parameter pair
+    public double[] getLengthNorms(double k1, double b) {
+        return lengthNorms.computeIfAbsent(k1 + "/" + b, key -> {
+            double averageLength = statistics.getAverageLength();
+            double[] norms = new double[documents.size()];
+            for (int ordinal = 0; ordinal < norms.length; ordinal++) {
+                norms[ordinal] = k1 * (1 - b + b * (documents.getLength(ordinal) / averageLength));
+            }
+            return norms;
+        });
+    }
+}
@@ -0,0 +1,17 @@
+package com.search.query.evaluation;
+
+public enum EvaluationStrategy {
+    // One term's whole list at a time into per-document accumulators; with an accumulator
+    // limit, rarest terms first and only existing candidates once the limit is reached
+    TERM_AT_A_TIME,
+    // All term cursors advanced together, one document scored completely at a time
+    DOCUMENT_AT_A_TIME,
+    // Document-at-a-time, skipping documents whose term bounds cannot reach the top k
+    MAX_SCORE,
+    WAND,
+    // WAND that also checks the block maxima at the pivot and skips whole blocks that cannot win
+    BLOCK_MAX_WAND,
+    // BM25 over impact-ordered postings, highest impacts first, stopping at the scoring budget;
+    // approximate, and document-at-a-time for models or indexes without impacts
+    SCORE_AT_A_TIME
+}
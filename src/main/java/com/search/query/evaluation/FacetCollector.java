@@ -0,0 +1,98 @@
+package com.search.query.evaluation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.search.common.document.FieldType;
+import com.search.common.index.DocValues;
+
+/**
+ * Counts facet values over a full match set. Matching documents are gathered
+ * as doc-value ordinals, then each field is counted in one pass over them.
+ */
+public class FacetCollector {
+    private final DocValues docValues;
+    private final Set<FieldType> fields;
+
+    private int[] ordinals = new int[1024];
+    private int size;
+    private Map<FieldType, int[]> counts;
+
+    public FacetCollector(DocValues docValues, Set<FieldType> fields) {
+        this.docValues = docValues;
+        this.fields = fields;
+    }
+
+    public void collect(long docId) {
+        int ordinal = docValues.ordinal(docId);
+        if (ordinal < 0) return;
+
+        if (size == ordinals.length) {
+            ordinals = Arrays.copyOf(ordinals, size * 2);
+        }
+        ordinals[size++] = ordinal;
+        counts = null;
+    }
+
+    public int getMatchCount() {
+        return size;
+    }
+
+    /**
+     * @return Up to limit (value, count) pairs of the field, by descending count
+     */
+    public List<Map.Entry<String, Integer>> top(FieldType field, int limit) {
+        DocValues.Column column = docValues.getColumn(field);
+        if (column == null) return List.of();
+
+        int[] fieldCounts = counts().get(field);
+        if (fieldCounts == null) return List.of();
+
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>();
+        for (int value = 0; value < fieldCounts.length; value++) {
+            if (fieldCounts[value] > 0) {
+                entries.add(Map.entry(column.getValue(value), fieldCounts[value]));
+            }
+        }
+        entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+        return entries.subList(0, Math.min(limit, entries.size()));
+    }
+
+    // One line per field, e.g. "JOURNAL: The Lancet (12), BMJ (7)"
+    public String summary(int limit) {
+        StringBuilder sb = new StringBuilder();
+        for (FieldType field : fields) {
+            sb.append(field).append(": ")
+              .append(top(field, limit).stream()
+                  .map(entry -> entry.getKey() + " (" + entry.getValue() + ")")
+                  .collect(Collectors.joining(", ")))
+              .append("\n");
+        }
+        return sb.toString();
+    }
+
+    private Map<FieldType, int[]> counts() {
+        if (counts != null) return counts;
+
+        counts = new EnumMap<>(FieldType.class);
+        for (FieldType field : fields) {
+            DocValues.Column column = docValues.getColumn(field);
+            if (column == null) continue;
+
+            int[] fieldCounts = new int[column.getValueCount()];
+            for (int i = 0; i < size; i++) {
+                int ordinal = ordinals[i];
+                for (int j = column.start(ordinal); j < column.end(ordinal); j++) {
+                    fieldCounts[column.ord(j)]++;
+                }
+            }
+            counts.put(field, fieldCounts);
+        }
+        return counts;
+    }
+}
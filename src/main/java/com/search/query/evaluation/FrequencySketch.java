@@ -0,0 +1,53 @@
+package com.search.query.evaluation;
+
+/**
+ * Count-min sketch of 4-bit counters in DEPTH rows. Once sampleSize
+ * increments have been counted, every counter is halved, so the
+ * frequencies follow recent popularity. Not thread-safe; the caches
+ * that use it update it under their lock.
+ */
+final class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final long[] SEEDS = {
+        0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+    };
+
+    private final byte[][] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int width) {
+        int capacity = Integer.highestOneBit(width * 2 - 1);
+        counters = new byte[DEPTH][capacity];
+        mask = capacity - 1;
+        sampleSize = 10 * capacity;
+    }
+
+    int frequency(int hash) {
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, counters[row][index(hash, row)]);
+        }
+        return frequency;
+    }
+
+    void increment(int hash) {
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(hash, row);
+            if (counters[row][index] < MAX_COUNT) counters[row][index]++;
+        }
+        if (++additions == sampleSize) {
+            for (byte[] row : counters) {
+                for (int i = 0; i < row.length; i++) row[i] >>= 1;
+            }
+            additions /= 2;
+        }
+    }
+
+    private int index(int hash, int row) {
+        long h = (hash + 1L) * SEEDS[row];
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
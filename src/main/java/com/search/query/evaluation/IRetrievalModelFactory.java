@@ -11,6 +11,22 @@ public class IRetrievalModelFactory {
         modelMap.put("OkapiBM25", new OkapiBM25());
     }
 
+    // Models with the given evaluation strategy; the shared instances use the default one
+    public static RetrievalModel getModel(String modelName, EvaluationStrategy strategy) {
+        return getModel(modelName, strategy, ScoringBudget.UNLIMITED);
+    }
+
+    // The budget limits term-at-a-time and score-at-a-time evaluation
+    public static RetrievalModel getModel(String modelName, EvaluationStrategy strategy, ScoringBudget budget) {
+        if ("OkapiBM25".equals(modelName)) {
+            return new OkapiBM25(strategy, budget);
+        }
+        if ("VSM".equals(modelName)) {
+            return new VectorSpaceModel(strategy, budget);
+        }
+        return getModel(modelName);
+    }
+
     public static RetrievalModel getModel(String modelName) {
         RetrievalModel model = modelMap.get(modelName);
     
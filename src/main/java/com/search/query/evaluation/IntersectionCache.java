@@ -0,0 +1,155 @@
+package com.search.query.evaluation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Intersections of the postings of term pairs that keep occurring together
+ * in queries, bounded by a byte budget. The third cache level, after the
+ * result cache and the postings cache.
+ *
+ * A pair is only intersected once it has been asked for MIN_FREQUENCY
+ * times, counted by a count-min sketch, so one-off pairs cost nothing.
+ * Entries are kept in LRU order, and a new one only displaces the least
+ * recently used ones if it has been asked for more often than each of
+ * them, as in ResultCache. Intersecting happens outside the lock.
+ */
+public class IntersectionCache {
+    private static final int MIN_FREQUENCY = 2;
+
+    interface Loader {
+        Intersection load() throws IOException;
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<Long, Intersection> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private long bytes;
+
+    private long hits;
+    private long misses;
+    private long rejections;
+    private long evictions;
+
+    public IntersectionCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache budget must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.sketch = new FrequencySketch(4096);
+    }
+
+    /**
+     * The intersection of two terms' postings, computed by the loader once
+     * the pair is frequent enough. The terms may be given in either order;
+     * the loader must intersect them in the order given.
+     * @return null if the pair is neither cached nor frequent yet
+     */
+    Intersection get(int firstTermId, int secondTermId, Loader loader) throws IOException {
+        boolean swapped = firstTermId > secondTermId;
+        long key = swapped ? key(secondTermId, firstTermId) : key(firstTermId, secondTermId);
+        int frequency;
+        synchronized (this) {
+            sketch.increment(Long.hashCode(key));
+            Intersection entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+                return swapped ? entry.swap() : entry;
+            }
+            misses++;
+            frequency = sketch.frequency(Long.hashCode(key));
+            if (frequency < MIN_FREQUENCY) return null;
+        }
+
+        Intersection intersection = loader.load();
+        Intersection entry = swapped ? intersection.swap() : intersection;
+        synchronized (this) {
+            if (!entries.containsKey(key) && admit(frequency, entry.bytes())) {
+                entries.put(key, entry);
+                bytes += entry.bytes();
+            }
+        }
+        return intersection;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() { return entries.size(); }
+    public synchronized long getBytes() { return bytes; }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getRejections() { return rejections; }
+    public synchronized long getEvictions() { return evictions; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d pairs, %d KB of %d KB; %d hits, %d misses, %d rejected, %d evicted",
+                             entries.size(), bytes >>> 10, maxBytes >>> 10, hits, misses, rejections, evictions);
+    }
+
+    // Evicts LRU entries to make room if all of them are used less often than the candidate
+    private boolean admit(int frequency, long size) {
+        if (size > maxBytes) {
+            rejections++;
+            return false;
+        }
+
+        List<Long> victims = new ArrayList<>();
+        long freed = 0;
+        Iterator<Map.Entry<Long, Intersection>> eldest = entries.entrySet().iterator();
+        while (bytes - freed + size > maxBytes) {
+            Map.Entry<Long, Intersection> victim = eldest.next();
+            if (sketch.frequency(Long.hashCode(victim.getKey())) >= frequency) {
+                rejections++;
+                return false;
+            }
+            victims.add(victim.getKey());
+            freed += victim.getValue().bytes();
+        }
+
+        for (Long victim : victims) {
+            bytes -= entries.remove(victim).bytes();
+            evictions++;
+        }
+        return true;
+    }
+
+    private static long key(int lowerTermId, int higherTermId) {
+        return ((long) lowerTermId << 32) | (higherTermId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Documents holding both terms of a pair in ascending docId order, with
+     * the frequency of each term. Immutable and shared between queries.
+     */
+    static final class Intersection {
+        final long[] docIds;
+        final int[] firstTfs;
+        final int[] secondTfs;
+
+        Intersection(long[] docIds, int[] firstTfs, int[] secondTfs) {
+            this.docIds = docIds;
+            this.firstTfs = firstTfs;
+            this.secondTfs = secondTfs;
+        }
+
+        int size() {
+            return docIds.length;
+        }
+
+        Intersection swap() {
+            return new Intersection(docIds, secondTfs, firstTfs);
+        }
+
+        long bytes() {
+            return DecodedPostings.OVERHEAD_BYTES + (long) docIds.length * (Long.BYTES + 2 * Integer.BYTES);
+        }
+    }
+}
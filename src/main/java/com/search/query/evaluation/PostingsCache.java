@@ -0,0 +1,198 @@
+package com.search.query.evaluation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decoded postings of hot terms, shared by all threads and queries of an
+ * index and bounded by a byte budget.
+ *
+ * Replacement is GreedyDual-Size-Frequency: an entry's priority is
+ *   clock + frequency * cost / bytes
+ * where the cost of decoding a list grows with its length plus a fixed
+ * per-list cost. The entry with the lowest priority is evicted first and
+ * the clock moves up to its priority, which ages the entries that are no
+ * longer used. A term is only decoded into the cache if its priority,
+ * with the frequency counted by a sketch across misses, beats that of
+ * everything it would evict; otherwise the caller reads the postings as usual.
+ *
+ * Hits only touch the concurrent map and the entry's counter; misses and
+ * replacement are serialized. Entries are queued by their priority when
+ * last ranked. Priorities only grow, so a stale key is a lower bound and
+ * the head of the queue is re-ranked until its key is current; finding the
+ * victims costs O(log entries) each instead of a scan of the cache.
+ */
+public class PostingsCache {
+    // Decoding cost of a list besides its postings (lookup, seek, allocation), in postings
+    private static final int LIST_COST = 64;
+
+    interface Loader {
+        DecodedPostings load() throws IOException;
+    }
+
+    private final long maxBytes;
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final PriorityQueue<Ranked> byPriority = new PriorityQueue<>(Comparator.comparingDouble(r -> r.priority));
+    private final FrequencySketch sketch;
+    private volatile double clock;
+    private long bytes;
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private int misses;
+    private int admissions;
+    private int evictions;
+
+    public PostingsCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache budget must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.sketch = new FrequencySketch(4096);
+    }
+
+    /**
+     * The decoded postings of a term, loading them into the cache if the
+     * term is hot enough to be admitted.
+     * @return null if the term is neither cached nor admitted
+     */
+    DecodedPostings get(int termId, int df, Loader loader) throws IOException {
+        Entry entry = entries.get(termId);
+        if (entry != null) {
+            entry.frequency.incrementAndGet();
+            entry.clock = clock;
+            hits.incrementAndGet();
+            return entry.postings;
+        }
+
+        long size = DecodedPostings.bytes(df);
+        int frequency;
+        synchronized (this) {
+            misses++;
+            sketch.increment(termId);
+            frequency = sketch.frequency(termId);
+            if (!admissible(priority(clock, frequency, df, size), size)) {
+                return null;
+            }
+        }
+
+        // Decoded outside the lock; a concurrent load of the same term only wastes work
+        DecodedPostings postings = loader.load();
+        synchronized (this) {
+            Entry existing = entries.get(termId);
+            if (existing != null) return existing.postings;
+
+            List<Ranked> victims = victims(priority(clock, frequency, df, size), size);
+            if (victims == null) return postings;
+            for (Ranked victim : victims) {
+                entries.remove(victim.entry.termId);
+                bytes -= victim.entry.bytes;
+                clock = Math.max(clock, victim.priority);
+                evictions++;
+            }
+            Entry admitted = new Entry(termId, postings, size, frequency, clock);
+            entries.put(termId, admitted);
+            byPriority.add(new Ranked(admitted, admitted.priority()));
+            bytes += size;
+            admissions++;
+        }
+        return postings;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        byPriority.clear();
+        bytes = 0;
+    }
+
+    public int size() { return entries.size(); }
+    public synchronized long getBytes() { return bytes; }
+    public int getHits() { return hits.get(); }
+    public synchronized int getMisses() { return misses; }
+    public synchronized int getAdmissions() { return admissions; }
+    public synchronized int getEvictions() { return evictions; }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d lists, %d KB of %d KB; %d hits, %d misses, %d admitted, %d evicted",
+                             entries.size(), bytes >>> 10, maxBytes >>> 10, hits.get(), misses, admissions, evictions);
+    }
+
+    // Cheap test before decoding: the candidate fits without evictions or outranks the lowest entry
+    private boolean admissible(double candidatePriority, long size) {
+        if (size > maxBytes) return false;
+        return bytes + size <= maxBytes || lowest().priority < candidatePriority;
+    }
+
+    /**
+     * Lowest-priority entries to evict so that size fits, taken off the
+     * queue, or null (queue unchanged) if one of them outranks the candidate.
+     */
+    private List<Ranked> victims(double candidatePriority, long size) {
+        if (size > maxBytes) return null;
+
+        List<Ranked> victims = new ArrayList<>();
+        long freed = 0;
+        while (bytes - freed + size > maxBytes) {
+            Ranked lowest = lowest();
+            if (lowest.priority >= candidatePriority) {
+                byPriority.addAll(victims);
+                return null;
+            }
+            victims.add(byPriority.poll());
+            freed += lowest.entry.bytes;
+        }
+        return victims;
+    }
+
+    // Head of the queue once its key is the entry's current priority
+    private Ranked lowest() {
+        while (true) {
+            Ranked head = byPriority.peek();
+            double current = head.entry.priority();
+            if (current <= head.priority) return head;
+            byPriority.poll();
+            byPriority.add(new Ranked(head.entry, current));
+        }
+    }
+
+    private static double priority(double clock, int frequency, int df, long bytes) {
+        return clock + frequency * (double) (df + LIST_COST) / bytes;
+    }
+
+    private static final class Entry {
+        final int termId;
+        final DecodedPostings postings;
+        final long bytes;
+        final AtomicInteger frequency;
+        volatile double clock;
+
+        Entry(int termId, DecodedPostings postings, long bytes, int frequency, double clock) {
+            this.termId = termId;
+            this.postings = postings;
+            this.bytes = bytes;
+            this.frequency = new AtomicInteger(frequency);
+            this.clock = clock;
+        }
+
+        double priority() {
+            return PostingsCache.priority(clock, frequency.get(), postings.size(), bytes);
+        }
+    }
+
+    // An entry keyed by its priority when it was queued
+    private static final class Ranked {
+        final Entry entry;
+        final double priority;
+
+        Ranked(Entry entry, double priority) {
+            this.entry = entry;
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.search.query.evaluation;
+
+import java.io.IOException;
+
+/**
+ * Iterator over one term's postings in ascending docId order. A new cursor is
+ * positioned before its first document; docId() is -1 until nextDoc() or
+ * advance() is called and NO_MORE_DOCS once the list is exhausted.
+ */
+public interface PostingsCursor {
+    long NO_MORE_DOCS = Long.MAX_VALUE;
+
+    long docId();
+
+    // Term frequency in the current document
+    int freq();
+
+    long nextDoc() throws IOException;
+
+    // Moves to the first document >= target, never backwards
+    long advance(long target) throws IOException;
+
+    // Number of documents in the list
+    int cost();
+
+    /**
+     * A new cursor over the same list, positioned before its first document,
+     * that shares what this one has already decoded instead of reading it again.
+     */
+    PostingsCursor fork();
+
+    /**
+     * Moves the block pointer, without decoding, to the block that holds the
+     * first document >= target.
+     * @return Last docId of that block; NO_MORE_DOCS for cursors without blocks
+     */
+    default long shallowAdvance(long target) throws IOException {
+        return NO_MORE_DOCS;
+    }
+
+    // Highest score factor of the block found by shallowAdvance over the term's highest
+    default double blockBoundRatio() {
+        return 1.0;
+    }
+}
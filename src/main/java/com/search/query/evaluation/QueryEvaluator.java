@@ -1,18 +1,44 @@
 package com.search.query.evaluation;
 
+import com.search.common.document.FieldType;
+import com.search.common.index.BitmapPostings;
+import com.search.common.index.BlockMaxIndex;
+import com.search.common.index.CollectionStatistics;
+import com.search.common.index.DocValues;
+import com.search.common.index.DocumentTable;
+import com.search.common.index.ForwardIndex;
+import com.search.common.index.ImpactPostings;
+import com.search.common.index.IndexFingerprint;
+import com.search.common.index.IndexMetadata;
+import com.search.common.index.KeywordIndex;
+import com.search.common.index.PostingsFile;
 import com.search.query.model.Query;
 import com.search.query.model.VocabularyTrie;
 import com.search.query.reader.VocabularyReader;
 import java.io.*;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.LongPredicate;
 
 public class QueryEvaluator {
+    public static final long DEFAULT_CACHE_BYTES = 32L << 20;
+
+    // Queries per shared scan in evaluateAll, which bounds its accumulator memory
+    public static final int SHARED_SCAN_QUERIES = 128;
 
     private final EvaluationContext context;
-    private RetrievalModel retrievalModel;
+    private volatile RetrievalModel retrievalModel;
+
+    private volatile ResultCache resultCache = new ResultCache(DEFAULT_CACHE_BYTES);
+
+    // Fingerprint of the index as loaded; the evaluator never reloads it, so neither does the cache
+    private final long fingerprint;
 
     public QueryEvaluator(String collectionIndexPath, RetrievalModel retrievalModel) throws IOException {
+        this.fingerprint = IndexFingerprint.of(new File(collectionIndexPath));
+
         // Load vocabulary
         VocabularyTrie vocabulary = new VocabularyTrie();
         VocabularyReader vocabReader = new VocabularyReader();
@@ -20,40 +46,89 @@ public class QueryEvaluator {
         File vocabFile = new File(collectionIndexPath, "VocabularyFile.txt");
         vocabReader.loadVocabulary(vocabFile, vocabulary);
 
-        // Load document norms
-        Map<Long, Double> documentNorms = new HashMap<>();
-        Map<Long, String> documentPaths = new HashMap<>();
-        Map<Long, Double> documentLengths = new HashMap<>();
-        Map<Long, Double> documentMaxFreqs = new HashMap<>();
+        // Per-document statistics as primitive columns; paths stay on disk
+        DocumentTable documents = DocumentTable.open(new File(collectionIndexPath));
+
+        IndexMetadata metadata = IndexMetadata.load(new File(collectionIndexPath));
+
+        // Stored at index time; older indexes derive them from the documents
+        CollectionStatistics statistics = CollectionStatistics.load(metadata);
+        if (statistics == null) {
+            statistics = CollectionStatistics.compute(documents);
+        }
+
+        // Map the postings once; every query reads the same view
+        PostingsFile postings = PostingsFile.open(Path.of(collectionIndexPath + File.separator +"PostingFile.txt"));
+
+        // Cursors assume docId-ordered lists; checked here once rather than sorted per query
+        checkPostingOrder(metadata, vocabFile, postings);
+
+        // Skip data and block maxima of the postings, null for older indexes
+        BlockMaxIndex blockMaxIndex = BlockMaxIndex.open(new File(collectionIndexPath));
 
-        loadDocumentInfo(new File(collectionIndexPath, "DocumentFile.txt"), documentPaths, documentNorms, documentLengths, documentMaxFreqs);
+        // Impact-ordered postings for score-at-a-time, null for older indexes
+        ImpactPostings impactPostings = ImpactPostings.open(new File(collectionIndexPath));
 
-        // Open postings file
-        Path postingsFile = Path.of(collectionIndexPath + File.separator +"PostingFile.txt");
+        // Near-duplicate clusters are keyed by external (PMCID) ids
+        Map<Long, Long> duplicateClusters = new HashMap<>();
+        loadDuplicateClusters(new File(collectionIndexPath, "DuplicateFile.txt"), duplicateClusters);
 
-        this.context = new EvaluationContext(vocabulary, documentNorms, documentLengths, documentMaxFreqs, documentPaths, postingsFile);
+        // Term vectors for query expansion, null for older indexes
+        ForwardIndex forwardIndex = ForwardIndex.open(new File(collectionIndexPath));
+
+        // Bitmap copies of the densest posting lists, null for older indexes
+        BitmapPostings bitmapPostings = BitmapPostings.open(new File(collectionIndexPath));
+
+        // Exact-match AUTHOR/JOURNAL values, null for older indexes
+        KeywordIndex keywordIndex = KeywordIndex.open(new File(collectionIndexPath));
+
+        // Facet columns, memory-mapped; null for older indexes
+        DocValues docValues = DocValues.open(new File(collectionIndexPath));
+
+        this.context = new EvaluationContext(vocabulary, documents, statistics, duplicateClusters, postings, blockMaxIndex, impactPostings, metadata, forwardIndex, bitmapPostings, keywordIndex, docValues);
 
         this.retrievalModel = retrievalModel;
 
     }
 
-    private void loadDocumentInfo(File docFile, Map<Long, String> documentPaths, Map<Long, Double> documentNorms, Map<Long, Double> documentLengths, Map<Long, Double> documentMaxFreqs)
-            throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(docFile))) {
+    // Older indexes have no recorded order and are scanned; lists merged by old versions are not sorted
+    private static void checkPostingOrder(IndexMetadata metadata, File vocabFile, PostingsFile postings) throws IOException {
+        Boolean sorted = metadata.hasSortedPostings();
+        if (sorted == null) {
+            long[] previous = new long[1];
+            boolean[] inOrder = { true };
+            try (BufferedReader reader = new BufferedReader(new FileReader(vocabFile))) {
+                String line;
+                while (inOrder[0] && (line = reader.readLine()) != null) {
+                    String[] parts = line.split(" ");
+                    previous[0] = Long.MIN_VALUE;
+                    postings.forEach(Long.parseLong(parts[2]), VocabularyReader.postingsCount(parts), (docId, tf) -> {
+                        if (docId < previous[0]) inOrder[0] = false;
+                        previous[0] = docId;
+                    });
+                }
+            }
+            sorted = inOrder[0];
+        }
+        if (!sorted) {
+            throw new IOException("Posting lists are not sorted by docId; rebuild the index or rewrite it with DocIdReorderMain");
+        }
+    }
+
+    private void loadDuplicateClusters(File duplicateFile, Map<Long, Long> duplicateClusters) throws IOException {
+        if (!duplicateFile.exists()) return;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(duplicateFile))) {
             String line;
             while ((line = reader.readLine()) != null) {
                 String[] parts = line.split(" ");
-                
-                long docId      = Long.parseLong(parts[0]);
-                
-                double maxfreq  = Double.parseDouble(parts[2]);
-                double length   = Double.parseDouble(parts[3]);
-                double norm     = Double.parseDouble(parts[4]);
-                
-                documentNorms.put(docId, norm);
-                documentPaths.put(docId, parts[1]);
-                documentLengths.put(docId, length);
-                documentMaxFreqs.put(docId,maxfreq);
+                long docId = Long.parseLong(parts[0]);
+                long clusterId = Long.parseLong(parts[1]);
+
+                // Cluster representatives stay retrievable
+                if (docId != clusterId) {
+                    duplicateClusters.put(docId, clusterId);
+                }
             }
         }
     }
@@ -72,7 +147,222 @@ public class QueryEvaluator {
         this.retrievalModel = model;
     }
 
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    // Evaluators may share a cache, even over different indexes; null turns caching off
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
     public Map<Long, Double> evaluate(Query query) {
-        return retrievalModel.evaluate(query, context);
+        return evaluate(query, null);
+    }
+
+    /**
+     * Evaluates the query under its keyword filters.
+     * @param facets Receives every matching document (not only the top results), may be null
+     */
+    public Map<Long, Double> evaluate(Query query, FacetCollector facets) {
+        // Facet counts need a full evaluation, so only plain queries use the cache
+        ResultCache cache = facets == null ? resultCache : null;
+        if (cache == null) {
+            return evaluateUncached(query, facets);
+        }
+
+        long indexFingerprint = fingerprint;
+        String key = ResultCache.key(retrievalModel.getConfiguration(), query);
+        Map<Long, Double> results = cache.get(indexFingerprint, key);
+        if (results == null) {
+            results = evaluateUncached(query, null);
+            // Models answer I/O errors with no results, which must not be cached
+            if (!results.isEmpty()) cache.put(indexFingerprint, key, results);
+        }
+        return results;
+    }
+
+    // Batch evaluation on the calling thread
+    public List<Map<Long, Double>> evaluateAll(List<Query> queries) {
+        return evaluateAll(queries, Runnable::run);
+    }
+
+    /**
+     * Evaluates a batch of queries, returning their results in order. Plain
+     * queries the model ranks exactly are evaluated SHARED_SCAN_QUERIES at a
+     * time by a shared scan that reads each distinct term's postings once;
+     * queries with keyword filters or approximate strategies are evaluated
+     * one by one. Scans and single queries run on the executor. Results go
+     * through the result cache as in evaluate.
+     *
+     * A shared scan is exhaustive term-at-a-time, so it only pays off when the
+     * model's own strategy does not prune much; otherwise use evaluate.
+     */
+    public List<Map<Long, Double>> evaluateAll(List<Query> queries, Executor executor) {
+        RetrievalModel model = retrievalModel;
+        ResultCache cache = resultCache;
+        long indexFingerprint = fingerprint;
+
+        List<Map<Long, Double>> results = new ArrayList<>(Collections.nCopies(queries.size(), null));
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        List<Integer> batch = new ArrayList<>();
+        List<ScoringPlan> plans = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i++) {
+            Query query = queries.get(i);
+            if (cache != null) {
+                Map<Long, Double> cached = cache.get(indexFingerprint, ResultCache.key(model.getConfiguration(), query));
+                if (cached != null) {
+                    results.set(i, cached);
+                    continue;
+                }
+            }
+
+            ScoringPlan plan = query.getKeywordFilters().isEmpty() ? model.exactPlan(query, context) : null;
+            if (plan == null) {
+                int index = i;
+                tasks.add(CompletableFuture.runAsync(() -> results.set(index,
+                    cacheResults(cache, indexFingerprint, model, query, evaluateUncached(query, null))), executor));
+                continue;
+            }
+
+            batch.add(i);
+            plans.add(plan);
+            if (plans.size() == SHARED_SCAN_QUERIES) {
+                tasks.add(scanBatch(queries, batch, plans, results, cache, indexFingerprint, model, executor));
+                batch = new ArrayList<>();
+                plans = new ArrayList<>();
+            }
+        }
+        if (!plans.isEmpty()) {
+            tasks.add(scanBatch(queries, batch, plans, results, cache, indexFingerprint, model, executor));
+        }
+
+        // Each task sets its own slots; joining them publishes the results to this thread
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+        return results;
+    }
+
+    // Evaluates the plans in one shared scan on the executor
+    private CompletableFuture<Void> scanBatch(List<Query> queries, List<Integer> batch, List<ScoringPlan> plans,
+                                              List<Map<Long, Double>> results, ResultCache cache,
+                                              long indexFingerprint, RetrievalModel model, Executor executor) {
+        return CompletableFuture.runAsync(() -> {
+            List<Map<Long, Double>> scanned;
+            try {
+                scanned = SharedScan.evaluate(plans, context);
+            } catch (IOException e) {
+                System.err.println("I/O error: " + e.getMessage());
+                scanned = Collections.nCopies(plans.size(), Map.of());
+            }
+            for (int j = 0; j < batch.size(); j++) {
+                int i = batch.get(j);
+                results.set(i, cacheResults(cache, indexFingerprint, model, queries.get(i), scanned.get(j)));
+            }
+        }, executor);
+    }
+
+    // Models answer I/O errors with no results, which must not be cached
+    private static Map<Long, Double> cacheResults(ResultCache cache, long indexFingerprint, RetrievalModel model,
+                                                  Query query, Map<Long, Double> results) {
+        if (cache != null && !results.isEmpty()) {
+            cache.put(indexFingerprint, ResultCache.key(model.getConfiguration(), query), results);
+        }
+        return results;
+    }
+
+    private Map<Long, Double> evaluateUncached(Query query, FacetCollector facets) {
+        Set<Long> keywordMatches;
+        try {
+            keywordMatches = matchKeywords(query);
+        } catch (IOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+            return Map.of();
+        }
+        BitSet valueMatches = matchDocValues(query);
+
+        DocValues docValues = context.getDocValues();
+        LongPredicate filter = docId -> true;
+        if (keywordMatches != null) {
+            filter = filter.and(keywordMatches::contains);
+        }
+        if (valueMatches != null) {
+            filter = filter.and(docId -> {
+                int ordinal = docValues.ordinal(docId);
+                return ordinal >= 0 && valueMatches.get(ordinal);
+            });
+        }
+        if (facets != null) {
+            filter = filter.and(docId -> {
+                facets.collect(docId);
+                return true;
+            });
+        }
+
+        // A query made only of filters is a plain lookup
+        if (query.getTermFrequency().isEmpty() && (keywordMatches != null || valueMatches != null)) {
+            Map<Long, Double> results = new HashMap<>();
+            if (keywordMatches != null) {
+                for (long docId : keywordMatches) {
+                    if (!context.isDuplicate(docId) && filter.test(docId)) results.put(docId, 1.0);
+                }
+            } else {
+                for (int ordinal = valueMatches.nextSetBit(0); ordinal >= 0; ordinal = valueMatches.nextSetBit(ordinal + 1)) {
+                    long docId = docValues.docId(ordinal);
+                    if (!context.isDuplicate(docId) && filter.test(docId)) results.put(docId, 1.0);
+                }
+            }
+            return results;
+        }
+        // Facet counts need every matching document, so pruning is off for them
+        return retrievalModel.evaluate(query, context, filter, facets != null);
+    }
+
+    // Facet fields are filtered through doc values, the rest through the keyword index
+    private boolean usesDocValues(FieldType field) {
+        return context.getDocValues() != null && context.getDocValues().hasField(field);
+    }
+
+    // Documents matching every keyword-index filter (one dictionary probe each), null if there are none
+    private Set<Long> matchKeywords(Query query) throws IOException {
+        Set<Long> matches = null;
+        for (Map.Entry<FieldType, List<String>> filter : query.getKeywordFilters().entrySet()) {
+            if (usesDocValues(filter.getKey())) continue;
+            if (context.getKeywordIndex() == null || !KeywordIndex.FIELDS.contains(filter.getKey())) {
+                System.err.println("Index cannot filter on " + filter.getKey() + ", ignoring it in query " + query.getId());
+                continue;
+            }
+
+            for (String value : filter.getValue()) {
+                Set<Long> docIds = new HashSet<>();
+                for (long docId : context.getKeywordIndex().lookup(filter.getKey(), value)) {
+                    docIds.add(docId);
+                }
+
+                if (matches == null) {
+                    matches = docIds;
+                } else {
+                    matches.retainAll(docIds);
+                }
+            }
+        }
+        return matches;
+    }
+
+    // Intersection of the cached doc-value bitsets of the filters, null if there are none
+    private BitSet matchDocValues(Query query) {
+        BitSet matches = null;
+        for (Map.Entry<FieldType, List<String>> filter : query.getKeywordFilters().entrySet()) {
+            if (!usesDocValues(filter.getKey())) continue;
+
+            for (String value : filter.getValue()) {
+                BitSet bits = context.getDocValues().filter(filter.getKey(), value);
+                if (matches == null) {
+                    matches = (BitSet) bits.clone();
+                } else {
+                    matches.and(bits);
+                }
+            }
+        }
+        return matches;
     }
-}
\ No newline at end of file
+}
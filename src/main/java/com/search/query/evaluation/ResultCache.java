@@ -0,0 +1,180 @@
+package com.search.query.evaluation;
+
+import com.search.common.document.FieldType;
+import com.search.query.model.Query;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Top results of evaluated queries, bounded by an estimate of their memory.
+ *
+ * Entries are kept in LRU order, but a new entry only displaces the least
+ * recently used ones if it has been asked for more often than each of them
+ * (TinyLFU admission). Access frequencies come from a small count-min sketch
+ * that is halved periodically, so one-off queries cannot flush the results
+ * of topics that are re-run all the time.
+ *
+ * Every lookup carries the fingerprint an evaluator took of its index when
+ * it loaded it; a different fingerprint drops all entries first. Entries
+ * therefore live as long as the loaded index: an index rebuilt on disk is
+ * only seen by a new QueryEvaluator, which brings a new fingerprint.
+ */
+public class ResultCache {
+    // Rough JVM cost of an entry besides its results: key string, arrays and map node
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private long bytes;
+    private long fingerprint;
+
+    private long hits;
+    private long misses;
+    private long rejections;
+    private long evictions;
+    private long invalidations;
+
+    public ResultCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache budget must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        // About one counter per 4KB of budget, a few times the number of entries that fit
+        this.sketch = new FrequencySketch((int) Math.min(1 << 24, Math.max(1024, maxBytes >>> 12)));
+    }
+
+    /**
+     * Key of a query's results: the model configuration, the query terms with
+     * weights scaled to a highest weight of 1, and the keyword filters.
+     */
+    public static String key(String modelConfiguration, Query query) {
+        StringBuilder key = new StringBuilder(modelConfiguration).append('|');
+
+        double maxWeight = 0;
+        for (double weight : query.getTermFrequency().values()) maxWeight = Math.max(maxWeight, weight);
+        for (Map.Entry<String, Double> term : new TreeMap<>(query.getTermFrequency()).entrySet()) {
+            key.append(term.getKey()).append('=').append(term.getValue() / maxWeight).append(' ');
+        }
+
+        key.append('|');
+        for (Map.Entry<FieldType, List<String>> filter : new TreeMap<>(query.getKeywordFilters()).entrySet()) {
+            List<String> values = new ArrayList<>();
+            for (String value : filter.getValue()) values.add(value.toLowerCase());
+            values.sort(null);
+            key.append(filter.getKey()).append('=').append(values).append(' ');
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return A copy of the cached results, or null on a miss
+     */
+    public synchronized Map<Long, Double> get(long indexFingerprint, String key) {
+        checkFingerprint(indexFingerprint);
+        sketch.increment(key.hashCode());
+
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        Map<Long, Double> results = new HashMap<>(entry.docIds.length * 2);
+        for (int i = 0; i < entry.docIds.length; i++) {
+            results.put(entry.docIds[i], entry.scores[i]);
+        }
+        return results;
+    }
+
+    // Offers results computed after a miss; they are only kept if admission allows it
+    public synchronized void put(long indexFingerprint, String key, Map<Long, Double> results) {
+        checkFingerprint(indexFingerprint);
+        if (entries.containsKey(key)) return;
+
+        Entry entry = new Entry(key, results);
+        if (entry.bytes > maxBytes) {
+            rejections++;
+            return;
+        }
+
+        // Victims in LRU order until the entry fits; all of them must be used less often
+        int frequency = sketch.frequency(key.hashCode());
+        List<String> victims = new ArrayList<>();
+        long freed = 0;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (bytes - freed + entry.bytes > maxBytes) {
+            Entry victim = eldest.next();
+            if (sketch.frequency(victim.key.hashCode()) >= frequency) {
+                rejections++;
+                return;
+            }
+            victims.add(victim.key);
+            freed += victim.bytes;
+        }
+
+        for (String victim : victims) {
+            bytes -= entries.remove(victim).bytes;
+            evictions++;
+        }
+        entries.put(key, entry);
+        bytes += entry.bytes;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() { return entries.size(); }
+    public synchronized long getBytes() { return bytes; }
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getRejections() { return rejections; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized long getInvalidations() { return invalidations; }
+
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : hits / (double) lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d entries, %d KB of %d KB; %d hits, %d misses (%.1f%%), %d rejected, %d evicted, %d invalidations",
+                             entries.size(), bytes >>> 10, maxBytes >>> 10, hits, misses, 100 * getHitRate(),
+                             rejections, evictions, invalidations);
+    }
+
+    private void checkFingerprint(long indexFingerprint) {
+        if (indexFingerprint != fingerprint) {
+            if (!entries.isEmpty()) invalidations++;
+            clear();
+            fingerprint = indexFingerprint;
+        }
+    }
+
+    private static final class Entry {
+        final String key;
+        final long[] docIds;
+        final double[] scores;
+        final long bytes;
+
+        Entry(String key, Map<Long, Double> results) {
+            this.key = key;
+            this.docIds = new long[results.size()];
+            this.scores = new double[results.size()];
+            int i = 0;
+            for (Map.Entry<Long, Double> result : results.entrySet()) {
+                docIds[i] = result.getKey();
+                scores[i++] = result.getValue();
+            }
+            this.bytes = ENTRY_OVERHEAD + 2L * key.length() + (long) results.size() * (Long.BYTES + Double.BYTES);
+        }
+    }
+}
@@ -2,8 +2,41 @@ package com.search.query.evaluation;
 
 import com.search.query.model.Query;
 import java.util.Map;
+import java.util.function.LongPredicate;
 
+/**
+ * A ranking formula over an EvaluationContext. Implementations keep no
+ * per-query state, so one instance may evaluate queries on many threads.
+ */
 public interface RetrievalModel {
-    Map<Long, Double> evaluate(Query query, EvaluationContext context);
+    /**
+     * Only documents accepted by the filter can enter the results. An exhaustive
+     * evaluation tests it once per matching document; otherwise documents that
+     * provably cannot reach the top results may be skipped without being tested.
+     */
+    Map<Long, Double> evaluate(Query query, EvaluationContext context, LongPredicate filter, boolean exhaustive);
+
+    default Map<Long, Double> evaluate(Query query, EvaluationContext context, LongPredicate filter) {
+        return evaluate(query, context, filter, false);
+    }
+
+    default Map<Long, Double> evaluate(Query query, EvaluationContext context) {
+        return evaluate(query, context, docId -> true);
+    }
+
+    /**
+     * What the model scores for the query, for shared batch scans, if it ranks
+     * the query exactly; null when it has no plans or approximates the query,
+     * in which case batches evaluate the query on its own.
+     */
+    default ScoringPlan exactPlan(Query query, EvaluationContext context) {
+        return null;
+    }
+
     String getModelName();
+
+    // Model name and every setting that changes its results, part of the result cache key
+    default String getConfiguration() {
+        return getModelName();
+    }
 }
\ No newline at end of file
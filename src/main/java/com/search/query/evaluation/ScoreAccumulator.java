@@ -0,0 +1,102 @@
+package com.search.query.evaluation;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing docId -> score map with linear probing. Doc ids are sparse
+ * (PMCIDs), so a dense array would be mostly empty. Occupied slots are
+ * remembered in insertion order, which makes iteration and clear() cost
+ * O(size) instead of O(capacity); instances are reused across queries.
+ */
+final class ScoreAccumulator {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private double[] values;
+    private int[] slots;
+    private int size;
+
+    ScoreAccumulator(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize) * 2 - 1) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new double[capacity];
+        slots = new int[capacity / 2 + 1];
+    }
+
+    void add(long docId, double score) {
+        int mask = keys.length - 1;
+        int i = hash(docId) & mask;
+        while (true) {
+            long key = keys[i];
+            if (key == docId) {
+                values[i] += score;
+                return;
+            }
+            if (key == EMPTY) {
+                keys[i] = docId;
+                values[i] = score;
+                slots[size++] = i;
+                if (size * 2 > keys.length) grow();
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    // Adds to a document that already has a score; new documents are ignored
+    void addIfPresent(long docId, double score) {
+        int mask = keys.length - 1;
+        int i = hash(docId) & mask;
+        long key;
+        while ((key = keys[i]) != EMPTY) {
+            if (key == docId) {
+                values[i] += score;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    // n-th document in insertion order
+    long docId(int n) {
+        return keys[slots[n]];
+    }
+
+    double score(int n) {
+        return values[slots[n]];
+    }
+
+    void clear() {
+        for (int n = 0; n < size; n++) {
+            keys[slots[n]] = EMPTY;
+        }
+        size = 0;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        int[] oldSlots = slots;
+        int oldSize = size;
+
+        allocate(keys.length * 2);
+        size = 0;
+        for (int n = 0; n < oldSize; n++) {
+            add(oldKeys[oldSlots[n]], oldValues[oldSlots[n]]);
+        }
+    }
+
+    private static int hash(long docId) {
+        long h = docId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
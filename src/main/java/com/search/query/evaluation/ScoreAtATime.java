@@ -0,0 +1,64 @@
+package com.search.query.evaluation;
+
+import com.search.common.index.ImpactPostings;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+/**
+ * Score-at-a-time evaluation over impact-ordered postings: the segments of
+ * all query terms are visited in descending impact order, so the postings
+ * that matter most are added first and the query can stop at any point
+ * with a useful ranking. Stops when the budget's postings or time run out.
+ */
+final class ScoreAtATime {
+    // Postings between deadline checks inside a segment
+    private static final int CLOCK_INTERVAL = 1024;
+
+    private ScoreAtATime() {}
+
+    static TopKHeap evaluate(List<ImpactPostings.TermImpacts> terms, double scale, ScoringBudget budget,
+                             EvaluationContext context, LongPredicate filter, int k) throws IOException {
+        long deadline = budget.deadline(System.nanoTime());
+
+        // (term, segment) pairs, highest impact first; ties keep query term order
+        int total = 0;
+        for (ImpactPostings.TermImpacts term : terms) total += term.segmentCount();
+        long[] order = new long[total];
+        int n = 0;
+        for (int t = 0; t < terms.size(); t++) {
+            ImpactPostings.TermImpacts term = terms.get(t);
+            for (int s = 0; s < term.segmentCount(); s++) {
+                // Impacts are at most 31 bits; pack so that ascending order is descending impact
+                order[n++] = ((long) (Integer.MAX_VALUE - term.impact(s)) << 32) | ((long) t << 16) | s;
+            }
+        }
+        Arrays.sort(order);
+
+        ScoreAccumulator accumulators = ScoringKernel.accumulator();
+        long left = budget.postingLimit();
+        scan:
+        for (long entry : order) {
+            ImpactPostings.TermImpacts term = terms.get((int) (entry >>> 16) & 0xffff);
+            int segment = (int) entry & 0xffff;
+            int impact = term.impact(segment);
+
+            ImpactPostings.SegmentReader reader = term.reader(segment);
+            for (int i = 0; reader.remaining() > 0; i++) {
+                if (left == 0) break scan;
+                if (i % CLOCK_INTERVAL == 0 && System.nanoTime() > deadline) break scan;
+                accumulators.add(reader.next(), impact);
+                left--;
+            }
+        }
+
+        TopKHeap topResults = new TopKHeap(k);
+        for (int i = 0; i < accumulators.size(); i++) {
+            long docId = accumulators.docId(i);
+            if (context.isDuplicate(docId) || !filter.test(docId)) continue;
+            topResults.offer(docId, accumulators.score(i) * scale);
+        }
+        return topResults;
+    }
+}
@@ -0,0 +1,63 @@
+package com.search.query.evaluation;
+
+/**
+ * Limits on the work of one query; a limit of 0 means none.
+ *
+ * Score-at-a-time stops at whichever of the postings and time limits is
+ * reached first and ranks what has been accumulated. Term-at-a-time stops
+ * creating accumulators once maxAccumulators documents have one, and from
+ * then on only adds to those ("continue" mode).
+ */
+public final class ScoringBudget {
+    public static final ScoringBudget UNLIMITED = new ScoringBudget(0, 0, 0);
+
+    private final long maxPostings;
+    private final long maxMillis;
+    private final int maxAccumulators;
+
+    private ScoringBudget(long maxPostings, long maxMillis, int maxAccumulators) {
+        this.maxPostings = maxPostings;
+        this.maxMillis = maxMillis;
+        this.maxAccumulators = maxAccumulators;
+    }
+
+    public static ScoringBudget of(long maxPostings, long maxMillis) {
+        return of(maxPostings, maxMillis, 0);
+    }
+
+    public static ScoringBudget of(long maxPostings, long maxMillis, int maxAccumulators) {
+        if (maxPostings < 0 || maxMillis < 0 || maxAccumulators < 0) {
+            throw new IllegalArgumentException("Negative scoring budget: " + maxPostings + " postings, "
+                                               + maxMillis + " ms, " + maxAccumulators + " accumulators");
+        }
+        return maxPostings == 0 && maxMillis == 0 && maxAccumulators == 0
+            ? UNLIMITED
+            : new ScoringBudget(maxPostings, maxMillis, maxAccumulators);
+    }
+
+    public long getMaxPostings() { return maxPostings; }
+    public long getMaxMillis() { return maxMillis; }
+    public int getMaxAccumulators() { return maxAccumulators; }
+
+    // Postings a query may process, Long.MAX_VALUE without a limit
+    long postingLimit() {
+        return maxPostings == 0 ? Long.MAX_VALUE : maxPostings;
+    }
+
+    // Documents term-at-a-time may create accumulators for, Integer.MAX_VALUE without a limit
+    int accumulatorLimit() {
+        return maxAccumulators == 0 ? Integer.MAX_VALUE : maxAccumulators;
+    }
+
+    // System.nanoTime() deadline for a query started at the given time, Long.MAX_VALUE without a limit
+    long deadline(long startNanos) {
+        return maxMillis == 0 ? Long.MAX_VALUE : startNanos + maxMillis * 1_000_000L;
+    }
+
+    @Override
+    public String toString() {
+        return this == UNLIMITED
+            ? "unlimited"
+            : maxPostings + " postings, " + maxMillis + " ms, " + maxAccumulators + " accumulators";
+    }
+}
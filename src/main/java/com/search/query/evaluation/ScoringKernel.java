@@ -0,0 +1,293 @@
+package com.search.query.evaluation;
+
+import com.search.common.index.BitmapPostings;
+import com.search.common.index.BlockMaxIndex;
+import com.search.common.index.ScoreFactor;
+import com.search.query.model.VocabularyTrie.TermData;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongPredicate;
+
+/**
+ * Decode-and-score loops shared by the models. Postings are decoded from the
+ * bitmap lists or the mapped text postings straight into primitive docId/tf
+ * pairs and handed to the model's scorer; the models only supply the formulas.
+ */
+final class ScoringKernel {
+    // One accumulator per query thread, cleared and reused by every query
+    private static final ThreadLocal<ScoreAccumulator> ACCUMULATORS =
+        ThreadLocal.withInitial(() -> new ScoreAccumulator(1024));
+
+    // Contribution of one posting of the current term
+    interface TermScorer {
+        double score(long docId, int tf);
+    }
+
+    private ScoringKernel() {}
+
+    /**
+     * Top k documents under the given strategy.
+     * @param upperBounds Per-term bounds on a contribution after finishing, null if unknown;
+     *                    pruning strategies fall back to plain document-at-a-time without them
+     * @param boundFactor The stored factor each upper bound is proportional to, which
+     *                    block-max pruning scales per block
+     * @param exhaustive  Disables pruning so that the filter sees every matching document
+     * @param budget      Accumulator limit of term-at-a-time; the other strategies ignore it
+     */
+    static TopKHeap evaluate(EvaluationStrategy strategy, List<TermData> terms, List<TermScorer> scorers,
+                             double[] upperBounds, ScoreFactor boundFactor, DocumentAtATime.ScoreFinisher finisher,
+                             EvaluationContext context, LongPredicate filter, boolean exhaustive,
+                             ScoringBudget budget, int k) throws IOException {
+        if (strategy == EvaluationStrategy.TERM_AT_A_TIME) {
+            ScoreAccumulator accumulators = accumulator();
+            int limit = exhaustive ? Integer.MAX_VALUE : budget.accumulatorLimit();
+            if (limit == Integer.MAX_VALUE) {
+                for (int i = 0; i < terms.size(); i++) {
+                    scoreTerm(context, terms.get(i), scorers.get(i), accumulators);
+                }
+            } else {
+                // Rarest terms first, so that the limited accumulators go to the documents
+                // of the highest-idf terms (idf falls with df in both models)
+                for (int i : byDocumentFrequency(terms)) {
+                    scoreTerm(context, terms.get(i), scorers.get(i), accumulators, limit);
+                }
+            }
+
+            TopKHeap topResults = new TopKHeap(k);
+            for (int i = 0; i < accumulators.size(); i++) {
+                long docId = accumulators.docId(i);
+                if (context.isDuplicate(docId) || !filter.test(docId)) continue;
+                topResults.offer(docId, finisher.finish(docId, accumulators.score(i)));
+            }
+            return topResults;
+        }
+
+        PostingsCursor[] cursors = new PostingsCursor[terms.size()];
+        for (int i = 0; i < cursors.length; i++) {
+            cursors[i] = cursor(context, terms.get(i), boundFactor);
+        }
+        TermScorer[] scorerArray = scorers.toArray(new TermScorer[0]);
+
+        if (!exhaustive && upperBounds != null && strategy != EvaluationStrategy.DOCUMENT_AT_A_TIME
+                && strategy != EvaluationStrategy.SCORE_AT_A_TIME) {
+            double floor = seedThreshold(terms, cursors, scorerArray, upperBounds, boundFactor, finisher, context, filter, k);
+            if (strategy == EvaluationStrategy.MAX_SCORE) {
+                return DynamicPruning.maxScore(cursors, scorerArray, upperBounds, finisher, context, filter, floor, k);
+            }
+            if (strategy == EvaluationStrategy.WAND) {
+                return DynamicPruning.wand(cursors, scorerArray, upperBounds, finisher, context, filter, floor, k);
+            }
+            return DynamicPruning.blockMaxWand(cursors, scorerArray, upperBounds, finisher, context, filter, floor, k);
+        }
+        return DocumentAtATime.evaluate(cursors, scorerArray, finisher, context, filter, k);
+    }
+
+    /**
+     * Initial pruning threshold from the cached intersection of the two terms
+     * with the highest bounds, whose documents are the likeliest winners.
+     * NEGATIVE_INFINITY when there is no such pair or it is not cached and
+     * not yet frequent enough to be intersected. The seeds are scored with
+     * forks of the query's cursors, so no list is decoded a second time.
+     */
+    private static double seedThreshold(List<TermData> terms, PostingsCursor[] cursors, TermScorer[] scorers,
+                                        double[] upperBounds, ScoreFactor boundFactor, DocumentAtATime.ScoreFinisher finisher,
+                                        EvaluationContext context, LongPredicate filter, int k) throws IOException {
+        IntersectionCache cache = context.getIntersectionCache();
+        if (cache == null || terms.size() < 2) return Double.NEGATIVE_INFINITY;
+
+        int first = 0;
+        int second = 1;
+        if (upperBounds[second] > upperBounds[first]) {
+            first = 1;
+            second = 0;
+        }
+        for (int i = 2; i < terms.size(); i++) {
+            if (upperBounds[i] > upperBounds[first]) {
+                second = first;
+                first = i;
+            } else if (upperBounds[i] > upperBounds[second]) {
+                second = i;
+            }
+        }
+
+        TermData firstTerm = terms.get(first);
+        TermData secondTerm = terms.get(second);
+        IntersectionCache.Intersection intersection = cache.get(firstTerm.termId, secondTerm.termId,
+            () -> intersect(context, firstTerm, secondTerm, boundFactor));
+        if (intersection == null) return Double.NEGATIVE_INFINITY;
+
+        PostingsCursor[] forks = new PostingsCursor[cursors.length];
+        for (int i = 0; i < forks.length; i++) {
+            forks[i] = cursors[i].fork();
+        }
+        return DynamicPruning.seedThreshold(intersection, first, second, forks, scorers, finisher, context, filter, k);
+    }
+
+    // Two bitmap lists are intersected container by container, anything else by leapfrogging cursors
+    private static IntersectionCache.Intersection intersect(EvaluationContext context, TermData first, TermData second,
+                                                            ScoreFactor boundFactor) throws IOException {
+        BitmapPostings.TermPostings firstBitmap = bitmapPostings(context, first);
+        BitmapPostings.TermPostings secondBitmap = firstBitmap != null ? bitmapPostings(context, second) : null;
+        if (secondBitmap == null) {
+            return intersect(cursor(context, first, boundFactor), cursor(context, second, boundFactor));
+        }
+
+        int capacity = Math.min(firstBitmap.getDf(), secondBitmap.getDf());
+        long[] docIds = new long[capacity];
+        int[] firstTfs = new int[capacity];
+        int[] secondTfs = new int[capacity];
+        int[] size = { 0 };
+        firstBitmap.forEachShared(secondBitmap, (docId, tf, otherTf) -> {
+            docIds[size[0]] = docId;
+            firstTfs[size[0]] = tf;
+            secondTfs[size[0]++] = otherTf;
+        });
+        return new IntersectionCache.Intersection(Arrays.copyOf(docIds, size[0]),
+                                                  Arrays.copyOf(firstTfs, size[0]),
+                                                  Arrays.copyOf(secondTfs, size[0]));
+    }
+
+    // Leapfrog intersection, driven by the shorter list
+    private static IntersectionCache.Intersection intersect(PostingsCursor first, PostingsCursor second) throws IOException {
+        boolean swapped = second.cost() < first.cost();
+        PostingsCursor lead = swapped ? second : first;
+        PostingsCursor other = swapped ? first : second;
+
+        int capacity = Math.min(first.cost(), second.cost());
+        long[] docIds = new long[capacity];
+        int[] leadTfs = new int[capacity];
+        int[] otherTfs = new int[capacity];
+        int size = 0;
+        for (long docId = lead.nextDoc(); docId != PostingsCursor.NO_MORE_DOCS; docId = lead.nextDoc()) {
+            if (other.docId() < docId && other.advance(docId) == PostingsCursor.NO_MORE_DOCS) break;
+            if (other.docId() == docId) {
+                docIds[size] = docId;
+                leadTfs[size] = lead.freq();
+                otherTfs[size++] = other.freq();
+            }
+        }
+
+        docIds = Arrays.copyOf(docIds, size);
+        leadTfs = Arrays.copyOf(leadTfs, size);
+        otherTfs = Arrays.copyOf(otherTfs, size);
+        return swapped ? new IntersectionCache.Intersection(docIds, otherTfs, leadTfs)
+                       : new IntersectionCache.Intersection(docIds, leadTfs, otherTfs);
+    }
+
+    static void scoreTerm(EvaluationContext context, TermData termData, TermScorer scorer,
+                          ScoreAccumulator accumulators) throws IOException {
+        forEachPosting(context, termData, (docId, tf) -> accumulators.add(docId, scorer.score(docId, tf)));
+    }
+
+    /**
+     * Scores a term while at most limit documents have accumulators. Once
+     * the limit is reached the rest of the list only adds to existing
+     * candidates ("continue" mode), so query memory stays bounded.
+     */
+    static void scoreTerm(EvaluationContext context, TermData termData, TermScorer scorer,
+                          ScoreAccumulator accumulators, int limit) throws IOException {
+        forEachPosting(context, termData, (docId, tf) -> {
+            if (accumulators.size() < limit) {
+                accumulators.add(docId, scorer.score(docId, tf));
+            } else {
+                accumulators.addIfPresent(docId, scorer.score(docId, tf));
+            }
+        });
+    }
+
+    // Cached postings when the term is hot, otherwise streamed from the bitmap or text postings
+    static void forEachPosting(EvaluationContext context, TermData termData,
+                               BitmapPostings.PostingConsumer consumer) throws IOException {
+        DecodedPostings decoded = decoded(context, termData);
+        if (decoded != null) {
+            decoded.forEach(consumer);
+            return;
+        }
+
+        BitmapPostings.TermPostings bitmap = bitmapPostings(context, termData);
+        if (bitmap != null) {
+            bitmap.forEach(consumer);
+        } else {
+            context.getPostings().forEach(termData.pointer, termData.postings, consumer);
+        }
+    }
+
+    // Term indexes by ascending df, ties in query order
+    private static int[] byDocumentFrequency(List<TermData> terms) {
+        int[] order = new int[terms.size()];
+        for (int i = 0; i < order.length; i++) {
+            int j = i;
+            while (j > 0 && terms.get(order[j - 1]).df > terms.get(i).df) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Cursor over the postings of a term: the bitmap list when there is one,
+     * otherwise the text postings, decoded block by block when the index has
+     * block-max data for the term and read whole when it does not. Hot terms
+     * come from the decoded postings cache either way.
+     */
+    static PostingsCursor cursor(EvaluationContext context, TermData termData, ScoreFactor boundFactor) throws IOException {
+        DecodedPostings decoded = decoded(context, termData);
+        BitmapPostings bitmapPostings = context.getBitmapPostings();
+        boolean hasBitmap = bitmapPostings != null && bitmapPostings.contains(termData.termId);
+        if (!hasBitmap && context.getBlockMaxIndex() != null) {
+            BlockMaxIndex.Blocks blocks = context.getBlockMaxIndex().blocks(termData.termId);
+            if (blocks != null) {
+                return new BlockPostingsCursor(context.getPostings(), termData.pointer, termData.postings, blocks, boundFactor, decoded);
+            }
+        }
+
+        if (decoded == null) {
+            decoded = load(context, termData);
+        }
+        return new ArrayPostingsCursor(decoded.docIds, decoded.tfs);
+    }
+
+    // A term's postings from the shared cache, null if they are not cached and not admitted
+    static DecodedPostings decoded(EvaluationContext context, TermData termData) throws IOException {
+        PostingsCache cache = context.getPostingsCache();
+        return cache == null ? null : cache.get(termData.termId, length(context, termData), () -> load(context, termData));
+    }
+
+    // Reads and decodes a term's whole list, from the bitmap list when there is one
+    private static DecodedPostings load(EvaluationContext context, TermData termData) throws IOException {
+        ArrayPostingsCursor.Builder builder = new ArrayPostingsCursor.Builder(length(context, termData));
+        BitmapPostings.TermPostings bitmap = bitmapPostings(context, termData);
+        if (bitmap != null) {
+            bitmap.forEach(builder);
+        } else {
+            context.getPostings().forEach(termData.pointer, termData.postings, builder);
+        }
+        return builder.decode();
+    }
+
+    // The calling thread's accumulator, emptied
+    static ScoreAccumulator accumulator() {
+        ScoreAccumulator accumulators = ACCUMULATORS.get();
+        accumulators.clear();
+        return accumulators;
+    }
+
+    // Number of postings in a term's list, which for a dense term lives in the bitmap postings only
+    private static int length(EvaluationContext context, TermData termData) {
+        BitmapPostings bitmapPostings = context.getBitmapPostings();
+        return bitmapPostings != null && bitmapPostings.contains(termData.termId)
+            ? bitmapPostings.getDf(termData.termId) : termData.postings;
+    }
+
+    // Dense terms are read from the bitmap postings when the index has them
+    static BitmapPostings.TermPostings bitmapPostings(EvaluationContext context, TermData termData) throws IOException {
+        BitmapPostings bitmapPostings = context.getBitmapPostings();
+        if (bitmapPostings == null || !bitmapPostings.contains(termData.termId)) {
+            return null;
+        }
+        return bitmapPostings.get(termData.termId);
+    }
+}
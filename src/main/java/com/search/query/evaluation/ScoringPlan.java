@@ -0,0 +1,56 @@
+package com.search.query.evaluation;
+
+import com.search.common.index.ScoreFactor;
+import com.search.query.model.VocabularyTrie.TermData;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.LongPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * What a model scores for one query: its terms with one scorer each, the
+ * bounds the pruning strategies need and the finisher of the summed score.
+ * Terms are kept in termId order, the order of their postings in the file,
+ * so that every strategy and the shared batch scan add up the contributions
+ * of a document in the same order and agree to the last bit.
+ */
+public final class ScoringPlan {
+    final List<TermData> terms;
+    final List<ScoringKernel.TermScorer> scorers;
+    final double[] upperBounds;   // null if a term has no bound
+    final ScoreFactor boundFactor;
+    final DocumentAtATime.ScoreFinisher finisher;
+    final int k;
+
+    /**
+     * @param bounds Per-term bounds on a contribution after finishing, null entries if unknown
+     */
+    ScoringPlan(List<TermData> terms, List<ScoringKernel.TermScorer> scorers, List<Double> bounds,
+                ScoreFactor boundFactor, DocumentAtATime.ScoreFinisher finisher, int k) {
+        List<Integer> order = IntStream.range(0, terms.size()).boxed()
+            .sorted(Comparator.comparingInt(i -> terms.get(i).termId))
+            .collect(Collectors.toList());
+
+        this.terms = new ArrayList<>(terms.size());
+        this.scorers = new ArrayList<>(terms.size());
+        for (int i : order) {
+            this.terms.add(terms.get(i));
+            this.scorers.add(scorers.get(i));
+        }
+        this.upperBounds = bounds.contains(null)
+            ? null
+            : order.stream().mapToDouble(bounds::get).toArray();
+        this.boundFactor = boundFactor;
+        this.finisher = finisher;
+        this.k = k;
+    }
+
+    TopKHeap evaluate(EvaluationStrategy strategy, EvaluationContext context, LongPredicate filter,
+                      boolean exhaustive, ScoringBudget budget) throws IOException {
+        return ScoringKernel.evaluate(strategy, terms, scorers, upperBounds, boundFactor, finisher,
+                                      context, filter, exhaustive, budget, k);
+    }
+}
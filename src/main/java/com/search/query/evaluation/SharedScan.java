@@ -0,0 +1,76 @@
+package com.search.query.evaluation;
+
+import com.search.query.model.VocabularyTrie.TermData;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Term-at-a-time evaluation of a batch of queries that reads the postings
+ * of each distinct term once. The batch is grouped by term, every term is
+ * scanned once in termId order (front to back through the postings file)
+ * and each posting is scattered into the accumulators of the queries that
+ * use the term. Postings I/O grows with the distinct terms of the batch
+ * rather than the summed query lengths; memory grows with the batch, one
+ * accumulator per query.
+ *
+ * A query's terms reach it in termId order, the order of its ScoringPlan, so
+ * its scores are the same as evaluating it alone.
+ */
+final class SharedScan {
+
+    private SharedScan() {}
+
+    // Top results of every plan, in order; duplicates are skipped as in the other strategies
+    static List<Map<Long, Double>> evaluate(List<ScoringPlan> plans, EvaluationContext context) throws IOException {
+        // (plan, term index) pairs of every term in the batch
+        TreeMap<Integer, List<int[]>> users = new TreeMap<>();
+        TreeMap<Integer, TermData> terms = new TreeMap<>();
+        for (int p = 0; p < plans.size(); p++) {
+            ScoringPlan plan = plans.get(p);
+            for (int t = 0; t < plan.terms.size(); t++) {
+                TermData termData = plan.terms.get(t);
+                users.computeIfAbsent(termData.termId, id -> new ArrayList<>()).add(new int[] { p, t });
+                terms.put(termData.termId, termData);
+            }
+        }
+
+        ScoreAccumulator[] accumulators = new ScoreAccumulator[plans.size()];
+        for (int p = 0; p < accumulators.length; p++) {
+            accumulators[p] = new ScoreAccumulator(1024);
+        }
+
+        for (Map.Entry<Integer, List<int[]>> term : users.entrySet()) {
+            List<int[]> termUsers = term.getValue();
+            ScoreAccumulator[] targets = new ScoreAccumulator[termUsers.size()];
+            ScoringKernel.TermScorer[] scorers = new ScoringKernel.TermScorer[termUsers.size()];
+            for (int u = 0; u < targets.length; u++) {
+                int[] user = termUsers.get(u);
+                targets[u] = accumulators[user[0]];
+                scorers[u] = plans.get(user[0]).scorers.get(user[1]);
+            }
+
+            ScoringKernel.forEachPosting(context, terms.get(term.getKey()), (docId, tf) -> {
+                for (int u = 0; u < targets.length; u++) {
+                    targets[u].add(docId, scorers[u].score(docId, tf));
+                }
+            });
+        }
+
+        List<Map<Long, Double>> results = new ArrayList<>(plans.size());
+        for (int p = 0; p < plans.size(); p++) {
+            ScoringPlan plan = plans.get(p);
+            ScoreAccumulator accumulator = accumulators[p];
+            TopKHeap topResults = new TopKHeap(plan.k);
+            for (int i = 0; i < accumulator.size(); i++) {
+                long docId = accumulator.docId(i);
+                if (context.isDuplicate(docId)) continue;
+                topResults.offer(docId, plan.finisher.finish(docId, accumulator.score(i)));
+            }
+            results.add(topResults.toMap());
+        }
+        return results;
+    }
+}
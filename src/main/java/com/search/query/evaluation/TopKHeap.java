@@ -0,0 +1,83 @@
+package com.search.query.evaluation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bounded min-heap of (docId, score) pairs in parallel primitive arrays.
+ * Keeps the k best scores seen; the root is the current k-th best.
+ */
+final class TopKHeap {
+    private final long[] docIds;
+    private final double[] scores;
+    private int size;
+
+    TopKHeap(int k) {
+        docIds = new long[k];
+        scores = new double[k];
+    }
+
+    void offer(long docId, double score) {
+        if (size < docIds.length) {
+            docIds[size] = docId;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (score > scores[0]) {
+            docIds[0] = docId;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isFull() {
+        return size == docIds.length;
+    }
+
+    // Lowest score in the heap, the bar a new document has to beat once it is full
+    double minScore() {
+        return size == 0 ? Double.NEGATIVE_INFINITY : scores[0];
+    }
+
+    Map<Long, Double> toMap() {
+        Map<Long, Double> results = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            results.put(docIds[i], scores[i]);
+        }
+        return results;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (scores[parent] <= scores[i]) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && scores[left] < scores[smallest]) smallest = left;
+            if (right < size && scores[right] < scores[smallest]) smallest = right;
+            if (smallest == i) return;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        long docId = docIds[a];
+        docIds[a] = docIds[b];
+        docIds[b] = docId;
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
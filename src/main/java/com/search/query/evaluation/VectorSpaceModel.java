@@ -1,68 +1,86 @@
 package com.search.query.evaluation;
 
+import com.search.common.index.DocumentTable;
+import com.search.common.index.ScoreFactor;
 import com.search.query.model.Query;
 import com.search.query.model.VocabularyTrie.TermData;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.HashMap;
+import java.util.function.LongPredicate;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
-import java.nio.file.StandardOpenOption;
 
 public class VectorSpaceModel implements RetrievalModel {
   private static final int MAX_RESULTS = 1000;
-    private static final int BUFFER_SIZE = 64 * 1024; // 64KB buffer
+
+    private final EvaluationStrategy strategy;
+    private final ScoringBudget budget;
+
+    public VectorSpaceModel() {
+        this(EvaluationStrategy.MAX_SCORE);
+    }
+
+    public VectorSpaceModel(EvaluationStrategy strategy) {
+        this(strategy, ScoringBudget.UNLIMITED);
+    }
+
+    // The budget's accumulator limit applies to TERM_AT_A_TIME
+    public VectorSpaceModel(EvaluationStrategy strategy, ScoringBudget budget) {
+        this.strategy = strategy;
+        this.budget = budget;
+    }
 
     @Override
-    public Map<Long, Double> evaluate(Query query, EvaluationContext context) {
-        PriorityQueue<Map.Entry<Long, Double>> topResults = 
-            new PriorityQueue<>(MAX_RESULTS, Map.Entry.comparingByValue());
-        
-        Map<String, Double> queryWeights = calculateQueryWeights(query, context);
-        double queryNorm = calculateQueryNorm(queryWeights);
-        Map<Long, Double> accumulators = new HashMap<>(1024);
-
-        try (FileChannel channel = FileChannel.open(context.getPostingsPath(), 
-                                                  StandardOpenOption.READ)) {
-            
-            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
-            
-            for (var entry : queryWeights.entrySet()) {
-                String term = entry.getKey();
-                double queryWeight = entry.getValue();
-                TermData termData = context.getVocabulary().search(term);
-                if (termData == null) continue;
-
-                processTermPostings(channel, buffer, termData, queryWeight, accumulators, context);
-            }
+    public Map<Long, Double> evaluate(Query query, EvaluationContext context, LongPredicate filter, boolean exhaustive) {
+        try {
+            return plan(query, context).evaluate(strategy, context, filter, exhaustive, budget).toMap();
         } catch (IOException e) {
             System.err.println("I/O error: " + e.getMessage());
             return Map.of();
         }
+    }
 
-        // Normalize scores and collect top results
-        for (var entry : accumulators.entrySet()) {
-            long docId = entry.getKey();
-            double score = entry.getValue();
-            double docNorm = context.getDocumentNorms().getOrDefault(docId, 1.0);
-            double normalized = score / (queryNorm * docNorm);
-            
-            if (topResults.size() < MAX_RESULTS) {
-                topResults.offer(Map.entry(docId, normalized));
-            } else if (normalized > topResults.peek().getValue()) {
-                topResults.poll();
-                topResults.offer(Map.entry(docId, normalized));
-            }
-        }
+    // Null when an accumulator limit approximates the query
+    @Override
+    public ScoringPlan exactPlan(Query query, EvaluationContext context) {
+        boolean limited = strategy == EvaluationStrategy.TERM_AT_A_TIME && budget.accumulatorLimit() != Integer.MAX_VALUE;
+        return limited ? null : plan(query, context);
+    }
 
-        // Convert to result map
-        Map<Long, Double> results = new HashMap<>(topResults.size());
-        for (var entry : topResults) {
-            results.put(entry.getKey(), entry.getValue());
+    private ScoringPlan plan(Query query, EvaluationContext context) {
+        Map<String, Double> queryWeights = calculateQueryWeights(query, context);
+        double queryNorm = calculateQueryNorm(queryWeights);
+
+        List<TermData> terms = new ArrayList<>();
+        List<ScoringKernel.TermScorer> scorers = new ArrayList<>();
+        List<Double> bounds = new ArrayList<>();
+        for (var entry : queryWeights.entrySet()) {
+            String term = entry.getKey();
+            double queryWeight = entry.getValue();
+            TermData termData = context.getVocabulary().search(term);
+            if (termData == null) continue;
+
+            double idf = Math.log(context.getTotalDocuments() / (double) termData.df);
+            terms.add(termData);
+            scorers.add((docId, tf) -> queryWeight * docWeight(docId, tf, idf, context));
+            bounds.add(termData.vsmBound == TermData.NO_BOUND
+                ? null
+                : queryWeight * idf * termData.vsmBound / queryNorm);
         }
-        
-        return results;
+
+        // Cosine normalization of the summed weights
+        DocumentAtATime.ScoreFinisher normalize = (docId, score) -> {
+            int ordinal = context.getDocuments().ordinal(docId);
+            double docNorm = ordinal >= 0 ? context.getDocuments().getNorm(ordinal) : 1.0;
+            return score / (queryNorm * docNorm);
+        };
+        return new ScoringPlan(terms, scorers, bounds, ScoreFactor.VSM, normalize, MAX_RESULTS);
+    }
+
+    @Override
+    public String getConfiguration() {
+        return getModelName() + " " + strategy + " " + budget;
     }
 
     public String getModelName()
@@ -70,56 +88,12 @@ public class VectorSpaceModel implements RetrievalModel {
         return "VSM";
     }
 
-    private void processTermPostings(FileChannel channel, ByteBuffer buffer,
-                                    TermData termData, double queryWeight,
-                                    Map<Long, Double> accumulators, EvaluationContext context) throws IOException {
-        long position = termData.pointer;
-        int remaining = termData.df;
-        StringBuilder sb = new StringBuilder(128);
-        
-        channel.position(position);
-        buffer.clear();
-        
-        while (remaining > 0 && channel.read(buffer) != -1) {
-            buffer.flip();
-            
-            while (buffer.hasRemaining() && remaining > 0) {
-                char c = (char) buffer.get();
-                if (c == '\n') {
-                    processPostingLine(sb.toString(), queryWeight, accumulators, context, termData);
-                    sb.setLength(0);
-                    remaining--;
-                } else {
-                    sb.append(c);
-                }
-            }
-            
-            buffer.compact();
-        }
-        
-        // Process last line if any
-        if (sb.length() > 0 && remaining > 0) {
-            processPostingLine(sb.toString(), queryWeight, accumulators, context, termData);
-        }
-    }
-
-    private void processPostingLine(String line, double queryWeight, 
-                                    Map<Long, Double> accumulators,
-                                    EvaluationContext context,
-                                    TermData termData) {
-        int firstSpace = line.indexOf(' ');
-        if (firstSpace <= 0) return;
-        
-        try {
-            long docId = Long.parseLong(line.substring(0, firstSpace));
-            int secondSpace = line.indexOf(' ', firstSpace + 1);
-            double docTf = Double.parseDouble(line.substring(firstSpace + 1, secondSpace));
-            double docWeight = docTf * Math.log(context.getTotalDocuments() / (double) termData.df) / context.getDocumentMaxFrequenc().get(docId);
-
-            accumulators.merge(docId, queryWeight * docWeight , Double::sum);
-        } catch (NumberFormatException | IndexOutOfBoundsException e) {
-            System.err.println("Invalid posting line: " + line);
-        }
+    private double docWeight(long docId, int docTf, double idf, EvaluationContext context) {
+        DocumentTable documents = context.getDocuments();
+        int ordinal = documents.ordinal(docId);
+        // Documents missing from the table are not normalized, as in the finisher
+        double maxFrequency = ordinal >= 0 ? documents.getMaxFrequency(ordinal) : 1.0;
+        return docTf * idf / maxFrequency;
     }
 
     private Map<String, Double> calculateQueryWeights(Query query, EvaluationContext context) {
@@ -2,11 +2,13 @@ package com.search.query.expansion;
 
 import com.search.common.document.Document;
 import com.search.common.document.DocumentFactory;
+import com.search.common.index.ForwardIndex;
 import com.search.common.token.SimpleTokenStream;
 import com.search.common.token.TokenStream;
 import com.search.common.utils.StopWordManager;
 import com.search.query.evaluation.EvaluationContext;
 import com.search.query.model.Query;
+import com.search.query.model.VocabularyTrie;
 
 import java.io.File;
 import java.io.IOException;
@@ -29,13 +31,72 @@ public class QueryExpander {
         List<Map.Entry<Long, Double>> sortedResults = new ArrayList<>(evaluationResults.entrySet());
         sortedResults.sort(Map.Entry.comparingByValue(Comparator.reverseOrder()));
 
-        Map<Long, String> documentPaths = context.getDocumentPaths();
+        ForwardIndex forwardIndex = context.getForwardIndex();
+        Map<String, Integer> termFrequencies = forwardIndex != null
+                ? countStoredTerms(sortedResults, context, forwardIndex)
+                : countParsedTerms(sortedResults, context);
+
+        List<Map.Entry<String, Integer>> sortedTerms = new ArrayList<>(termFrequencies.entrySet());
+        sortedTerms.sort(Map.Entry.comparingByValue(Comparator.reverseOrder()));
+
+        List<String> expansionTerms = sortedTerms.stream()
+                .limit(TERMS_TO_KEEP)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        String newQuery = query.getQuery() + " " + String.join(" ", expansionTerms);
+
+        // Stored terms are already stemmed; only the original text goes through the token stream
+        List<String> queryList;
+        if (forwardIndex != null) {
+            queryList = process(query.getQuery());
+            queryList.addAll(expansionTerms);
+        } else {
+            queryList = process(newQuery);
+        }
+        return new Query(query.getId(), newQuery, queryList);
+    }
+
+    // Sums term frequencies from the index's stored term vectors
+    private static Map<String, Integer> countStoredTerms(List<Map.Entry<Long, Double>> sortedResults,
+                                                         EvaluationContext context, ForwardIndex forwardIndex) {
+        VocabularyTrie vocabulary = context.getVocabulary();
+        Map<Integer, Integer> termIdFrequencies = new HashMap<>();
+
+        for (int i = 0; i < sortedResults.size() && i < FILES_TO_SCAN; i++) {
+            try {
+                ForwardIndex.TermVector vector = forwardIndex.lookup(sortedResults.get(i).getKey());
+                if (vector == null) continue;
+
+                for (int j = 0; j < vector.size(); j++) {
+                    termIdFrequencies.merge(vector.getTermId(j), vector.getTf(j), Integer::sum);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        for (Map.Entry<Integer, Integer> entry : termIdFrequencies.entrySet()) {
+            String term = vocabulary.getTerm(entry.getKey());
+
+            // Exclude terms that contain only numbers
+            if (term != null && !term.matches("\\d+")) {
+                termFrequencies.put(term, entry.getValue());
+            }
+        }
+        return termFrequencies;
+    }
+
+    // Fallback for indexes without term vectors: re-parse the top documents
+    private static Map<String, Integer> countParsedTerms(List<Map.Entry<Long, Double>> sortedResults,
+                                                         EvaluationContext context) {
         List<Document> documentList = new ArrayList<>();
 
         for (int i = 0; i < sortedResults.size() && i < FILES_TO_SCAN; i++) {
             try {
                 documentList.add(
-                        DocumentFactory.createDocument(new File(documentPaths.get(sortedResults.get(i).getKey()))));
+                        DocumentFactory.createDocument(new File(context.getDocumentPath(sortedResults.get(i).getKey())),
+                                context.getMetadata().getProfile()));
             } catch (IOException e) {
                 e.printStackTrace();
             }
@@ -52,22 +113,12 @@ public class QueryExpander {
                 }
             }
         }
-
-        List<Map.Entry<String, Integer>> sortedTerms = new ArrayList<>(termFrequencies.entrySet());
-        sortedTerms.sort(Map.Entry.comparingByValue(Comparator.reverseOrder()));
-
-        String newQuery = query.getQuery() + " " + sortedTerms.stream()
-                .limit(TERMS_TO_KEEP)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.joining(" "));
-
-        List<String> queryList = process(newQuery);
-        return new Query(query.getId(), newQuery, queryList);
+        return termFrequencies;
     }
 
     private static List<String> process(String text) {
         List<String> tokens = new ArrayList<>();
-        text = text.trim();
+        text = Query.stripKeywordFilters(text).trim();
         if (text.isEmpty())
             return tokens;
 
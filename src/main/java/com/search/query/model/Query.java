@@ -1,19 +1,30 @@
 package com.search.query.model;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.TreeMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.search.common.document.FieldType;
 
 public class Query {
+    // author:"R Kumar", journal:"The Lancet", category:review, ...
+    private static final Pattern KEYWORD_FILTER = Pattern.compile("(?i)\\b(author|journal|publisher|category):(?:\"([^\"]*)\"|(\\S+))");
+
     private int                  id;
     private String               query;
     private Map<String, Double>  termFrequency; 
+    private Map<FieldType, List<String>> keywordFilters;
 
     // Constructor to initialize the Query object
     public Query(int id, String query, List<String> tokens) {
         this.id = id;
         this.query = query.toLowerCase().trim();
         this.termFrequency = new TreeMap<>();
+        this.keywordFilters = parseKeywordFilters(query);
         calculateTermFreq(tokens);
     }
 
@@ -30,6 +41,27 @@ public class Query {
         return termFrequency;
     }
 
+    // Exact-match constraints; every value must match
+    public Map<FieldType, List<String>> getKeywordFilters() {
+        return keywordFilters;
+    }
+
+    // Query text without its keyword filters, for tokenization
+    public static String stripKeywordFilters(String text) {
+        return KEYWORD_FILTER.matcher(text).replaceAll(" ");
+    }
+
+    private static Map<FieldType, List<String>> parseKeywordFilters(String text) {
+        Map<FieldType, List<String>> filters = new EnumMap<>(FieldType.class);
+        Matcher matcher = KEYWORD_FILTER.matcher(text);
+        while (matcher.find()) {
+            String value = matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+            filters.computeIfAbsent(FieldType.valueOf(matcher.group(1).toUpperCase()), k -> new ArrayList<>())
+                   .add(value);
+        }
+        return filters;
+    }
+
     // Method to calculate term frequencies and normalize them
     public boolean calculateTermFreq(List<String> tokens) {
         if (tokens == null || tokens.isEmpty()) {
@@ -1,25 +1,50 @@
 package com.search.query.model;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class VocabularyTrie {
     private static class TrieNode {
         Map<Character, TrieNode> children = new HashMap<>();
         int df = -1;        // Document frequency
+        int postings = -1;  // Text postings stored at pointer
         long pointer = -1;  // File position pointer
+        int termId = -1;    // Line number in the vocabulary file
+        double bm25Bound = TermData.NO_BOUND;
+        double vsmBound = TermData.NO_BOUND;
     }
     
     private final TrieNode root = new TrieNode();
+    private final List<String> terms = new ArrayList<>(); // termId -> term
     
-    public void insert(String term, int df, long pointer) {
+    public void insert(String term, int termId, int df, long pointer) {
+        insert(term, termId, df, df, pointer, TermData.NO_BOUND, TermData.NO_BOUND);
+    }
+
+    public void insert(String term, int termId, int df, int postings, long pointer, double bm25Bound, double vsmBound) {
         TrieNode current = root;
         for (char c : term.toCharArray()) {
             char normalized = normalizeChar(c);
             current = current.children.computeIfAbsent(normalized, k -> new TrieNode());
         }
         current.df = df;
+        current.postings = postings;
         current.pointer = pointer;
+        current.termId = termId;
+        current.bm25Bound = bm25Bound;
+        current.vsmBound = vsmBound;
+
+        while (terms.size() <= termId) {
+            terms.add(null);
+        }
+        terms.set(termId, term);
+    }
+
+    // Reverse lookup for term ids stored in the forward index
+    public String getTerm(int termId) {
+        return termId >= 0 && termId < terms.size() ? terms.get(termId) : null;
     }
     
     public TermData search(String term) {
@@ -32,7 +57,7 @@ public class VocabularyTrie {
             }
             current = nextNode;
         }
-        return current.df != -1 ? new TermData(current.df, current.pointer) : null;
+        return current.df != -1 ? new TermData(current.df, current.postings, current.pointer, current.termId, current.bm25Bound, current.vsmBound) : null;
     }
     
     private char normalizeChar(char c) {
@@ -46,12 +71,30 @@ public class VocabularyTrie {
     }
     
     public static class TermData {
+        public static final double NO_BOUND = -1;
+
+        // Collection df, used for idf
         public final int df;
+        // Postings stored at pointer in PostingFile.txt: fewer than df once the index
+        // is pruned, none for a list kept in BitmapPostings.bin
+        public final int postings;
         public final long pointer;
+        public final int termId;
+        // Highest per-posting score factors, before idf and query weight (NO_BOUND if not stored)
+        public final double bm25Bound;
+        public final double vsmBound;
         
-        public TermData(int df, long pointer) {
+        public TermData(int df, long pointer, int termId) {
+            this(df, df, pointer, termId, NO_BOUND, NO_BOUND);
+        }
+
+        public TermData(int df, int postings, long pointer, int termId, double bm25Bound, double vsmBound) {
             this.df = df;
+            this.postings = postings;
             this.pointer = pointer;
+            this.termId = termId;
+            this.bm25Bound = bm25Bound;
+            this.vsmBound = vsmBound;
         }
     }
 }
\ No newline at end of file
@@ -14,7 +14,7 @@ public interface QueryReadingStrategy {
 
     default List<String> process(String text) {
         List<String> tokens = new ArrayList<>();
-        text = text.trim();
+        text = Query.stripKeywordFilters(text).trim();
         if (text.isEmpty()) return tokens;
 
         try (TokenStream ts = new SimpleTokenStream(text, StopWordManager.getStopWords())) {
@@ -18,7 +18,7 @@ public class TerminalReadingStrategy implements QueryReadingStrategy {
                 if (input.equalsIgnoreCase("s")) break;
                 
                 List<String> tokens = process(input);
-                if (!tokens.isEmpty()) {
+                if (!tokens.isEmpty() || !Query.stripKeywordFilters(input).equals(input)) {
                     queries.add(new Query(queryCount, input, tokens));
                     queryCount++;
                 }
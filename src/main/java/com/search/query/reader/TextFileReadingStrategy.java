@@ -24,7 +24,7 @@ public class TextFileReadingStrategy implements QueryReadingStrategy {
                 if (line.isEmpty()) continue;
                 
                 List<String> tokens = process(line);
-                if (!tokens.isEmpty()) {
+                if (!tokens.isEmpty() || !Query.stripKeywordFilters(line).equals(line)) {
                     queries.add(new Query(queries.size() + 1, line, tokens));
                 }
             }
@@ -25,30 +25,52 @@ public class VocabularyReader {
     private void processLine(String line, VocabularyTrie trie, int lineNumber) {
         String[] parts = line.trim().split("\\s+");
         
-        if (parts.length != 3) {
+        // "term df pointer", optionally followed by "bm25Bound vsmBound", then by
+        // the stored postings count when it is not the df
+        if (parts.length < 3 || parts.length > 6) {
             System.err.println("Invalid format at line " + lineNumber + ": " + line);
             return;
         }
 
         String term = parts[0].toLowerCase();  // Ensure lowercase
         int df;
+        int postings;
         long pointer;
+        double bm25Bound = VocabularyTrie.TermData.NO_BOUND;
+        double vsmBound = VocabularyTrie.TermData.NO_BOUND;
 
         try {
             df = Integer.parseInt(parts[1]);
             pointer = Long.parseLong(parts[2]);
+            postings = postingsCount(parts);
+            if (parts.length >= 5) {
+                bm25Bound = Double.parseDouble(parts[3]);
+                vsmBound = Double.parseDouble(parts[4]);
+            }
         } catch (NumberFormatException e) {
             System.err.println("Number format error at line " + lineNumber + ": " + line);
             return;
         }
 
         try {
-            trie.insert(term, df, pointer);
+            // Term ids are 0-based vocabulary line numbers
+            trie.insert(term, lineNumber - 1, df, postings, pointer, bm25Bound, vsmBound);
         } catch (IllegalArgumentException e) {
             System.err.println("Invalid term at line " + lineNumber + ": " + term);
         }
     }
 
+    /**
+     * Number of text postings stored for a split vocabulary line. It is
+     * appended as the last field (the 4th or 6th) when it differs from the
+     * collection df in the 2nd: lists shortened by pruning, and 0 for lists
+     * moved to BitmapPostings.bin. Otherwise it is the df.
+     */
+    public static int postingsCount(String[] parts) {
+        int df = Integer.parseInt(parts[1]);
+        return parts.length == 4 || parts.length == 6 ? Integer.parseInt(parts[parts.length - 1]) : df;
+    }
+
     // Alternative method for bulk loading from memory
     public void loadFromMemory(String[] entries, VocabularyTrie trie) {
         for (int i = 0; i < entries.length; i++) {